@@ -0,0 +1,92 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ *   Statistics of the indexed collection that ranked retrieval needs,
+ *   gathered while indexing: the number of documents and, in arrays
+ *   indexed by docID, each document's length in tokens and the norm its
+ *   term frequencies are multiplied by (the inverse of the length).
+ *   Scoring a posting is then two array reads.
+ *
+ *   The statistics are stored in the header of an index on disc (see
+ *   HashedIndex) and read back with it.
+ */
+public class CollectionStatistics {
+
+    /** One more than the largest docID seen. */
+    private int numberOfDocuments = 0;
+    private int[] docLength = new int[1024];
+    private float[] docNorm = new float[1024];
+
+
+    /**
+     *  Records the length of document docID, in tokens.
+     */
+    public void setDocumentLength( int docID, int length ) {
+        if(docID >= docLength.length){
+            int capacity = Math.max(docID + 1, docLength.length*2);
+            docLength = Arrays.copyOf(docLength, capacity);
+            docNorm = Arrays.copyOf(docNorm, capacity);
+        }
+        docLength[docID] = length;
+        docNorm[docID] = norm(length);
+        numberOfDocuments = Math.max(numberOfDocuments, docID + 1);
+    }
+
+    public int numberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    public int docLength( int docID ) {
+        return docLength[docID];
+    }
+
+    /**  The factor the term frequencies in document docID are weighted by. */
+    public float docNorm( int docID ) {
+        return docNorm[docID];
+    }
+
+    /**  The inverse document frequency, ln(N/df), of a term in df documents. */
+    public double idf( int df ) {
+        return Math.log((double) numberOfDocuments/df);
+    }
+
+    /**  The norm of a document of length tokens. */
+    static float norm( int length ) {
+        return length == 0 ? 0 : 1f/length;
+    }
+
+
+    /**
+     *  Writes the number of documents followed by their lengths.
+     */
+    public void write( DataOutput out ) throws IOException {
+        out.writeInt(numberOfDocuments);
+        for(int i = 0; i < numberOfDocuments; i++){
+            out.writeInt(docLength[i]);
+        }
+    }
+
+    /**
+     *  Reads statistics written by write().
+     */
+    public static CollectionStatistics read( DataInput in ) throws IOException {
+        CollectionStatistics statistics = new CollectionStatistics();
+        int n = in.readInt();
+        statistics.docLength = new int[Math.max(n, 1)];
+        statistics.docNorm = new float[Math.max(n, 1)];
+        for(int i = 0; i < n; i++){
+            statistics.setDocumentLength(i, in.readInt());
+        }
+        return statistics;
+    }
+}
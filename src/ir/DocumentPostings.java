@@ -0,0 +1,84 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.util.Arrays;
+
+/**
+ *   The postings of a single document, as built by an indexing worker:
+ *   for every term in the document, its positions in increasing order.
+ *   The indexer merges these into the index one document at a time.
+ *
+ *   Tokens come from the tokenizer as slices of its buffer and are
+ *   interned in a TermLexicon of the document's own, so no String is made
+ *   for them; the terms reach the index as slices of its arena.
+ */
+public class DocumentPostings implements TokenHandler {
+
+    public final int docID;
+
+    /** The number of tokens in the document. */
+    private int length = 0;
+
+    private final TermLexicon terms = new TermLexicon();
+    /** The positions of each term, by the term's id in terms. */
+    private Positions[] positions = new Positions[64];
+
+
+    public DocumentPostings( int docID ) {
+        this.docID = docID;
+    }
+
+    /**
+     *  Adds the next token of the document.
+     */
+    public void add( String token ) {
+        token(token.toCharArray(), 0, token.length());
+    }
+
+    /**
+     *  Adds the next token of the document, chars[start..start+length-1].
+     */
+    public void token( char[] chars, int start, int length ) {
+        int id = terms.intern(chars, start, length);
+        if(id == positions.length){
+            positions = Arrays.copyOf(positions, id*2);
+        }
+        if(positions[id] == null){
+            positions[id] = new Positions();
+        }
+        positions[id].add(this.length++);
+    }
+
+    /**  The number of tokens added. */
+    public int length() {
+        return length;
+    }
+
+    /**
+     *  Inserts the postings into index, one term at a time.
+     */
+    public void insertInto( Index index ) {
+        char[] chars = terms.chars();
+        for(int id = 0; id < terms.size(); id++){
+            index.insert(chars, terms.start(id), terms.length(id), docID, positions[id].offsets, positions[id].count, length);
+        }
+    }
+
+
+    /**  Growable array of the positions of one term. */
+    private static class Positions {
+        int[] offsets = new int[2];
+        int count = 0;
+
+        void add( int offset ) {
+            if(count == offsets.length){
+                offsets = Arrays.copyOf(offsets, count*2);
+            }
+            offsets[count++] = offset;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *   The paths of the documents of an index, by docID. DocIDs are dense:
+ *   the documents are added in docID order starting from 0.
+ *
+ *   Paths of neighbouring documents mostly share their directory, so they
+ *   are front coded into one byte pool: each entry is the VByte coded
+ *   length of the prefix it shares with the path before it, the VByte
+ *   coded length of the rest and the rest, in UTF-8. Every BLOCK_SIZE:th
+ *   entry shares nothing, and only where those entries start is kept, so
+ *   looking up a path decodes at most one block.
+ *
+ *   The store is kept in the header of an index on disc (see HashedIndex).
+ */
+public class DocumentStore {
+
+    static final int BLOCK_SIZE = 16;
+
+    private int size = 0;
+    private byte[] pool = new byte[1024];
+    private int poolSize = 0;
+    private int[] blockStarts = new int[64];
+
+    /** The last path added, to front code the next one against. */
+    private byte[] last = new byte[0];
+
+
+    /**
+     *  Adds the path of document docID, which must be the number of
+     *  documents added so far.
+     */
+    public synchronized void add( int docID, String path ) {
+        if(docID != size){
+            throw new IllegalArgumentException("Document " + docID + " added as document number " + size);
+        }
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        int shared = 0;
+        if(size % BLOCK_SIZE == 0){
+            int block = size/BLOCK_SIZE;
+            if(block == blockStarts.length){
+                blockStarts = Arrays.copyOf(blockStarts, block*2);
+            }
+            blockStarts[block] = poolSize;
+        }
+        else{
+            int max = Math.min(bytes.length, last.length);
+            while(shared < max && bytes[shared] == last[shared]){
+                shared++;
+            }
+        }
+        int rest = bytes.length - shared;
+        if(poolSize + 2*VByte.MAX_BYTES + rest > pool.length){
+            pool = Arrays.copyOf(pool, Math.max(poolSize + 2*VByte.MAX_BYTES + rest, pool.length*2));
+        }
+        poolSize = VByte.write(pool, poolSize, shared);
+        poolSize = VByte.write(pool, poolSize, rest);
+        System.arraycopy(bytes, shared, pool, poolSize, rest);
+        poolSize += rest;
+        last = bytes;
+        size++;
+    }
+
+    /**
+     *  Returns the path of document docID, or null if there is no such
+     *  document.
+     */
+    public synchronized String path( int docID ) {
+        if(docID < 0 || docID >= size){
+            return null;
+        }
+        int pos = blockStarts[docID/BLOCK_SIZE];
+        byte[] path = new byte[64];
+        int length = 0;
+        int[] value = new int[1];
+        for(int i = docID - docID % BLOCK_SIZE; i <= docID; i++){
+            pos = VByte.readDeltas(pool, pos, 1, value);
+            int shared = value[0];
+            pos = VByte.readDeltas(pool, pos, 1, value);
+            int rest = value[0];
+            if(shared + rest > path.length){
+                path = Arrays.copyOf(path, Math.max(shared + rest, path.length*2));
+            }
+            System.arraycopy(pool, pos, path, shared, rest);
+            pos += rest;
+            length = shared + rest;
+        }
+        return new String(path, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /**
+     *  Writes the number of documents, the size of the pool and the pool.
+     */
+    public synchronized void write( DataOutput out ) throws IOException {
+        out.writeInt(size);
+        out.writeInt(poolSize);
+        out.write(pool, 0, poolSize);
+    }
+
+    /**
+     *  Reads a store written by write().
+     */
+    public static DocumentStore read( DataInput in ) throws IOException {
+        DocumentStore store = new DocumentStore();
+        int size = in.readInt();
+        store.poolSize = in.readInt();
+        store.pool = new byte[Math.max(store.poolSize, 1)];
+        in.readFully(store.pool, 0, store.poolSize);
+        //Find the block starts again
+        store.blockStarts = new int[Math.max(1, (size + BLOCK_SIZE - 1)/BLOCK_SIZE)];
+        int[] value = new int[1];
+        int pos = 0;
+        for(int i = 0; i < size; i++){
+            if(i % BLOCK_SIZE == 0){
+                store.blockStarts[i/BLOCK_SIZE] = pos;
+            }
+            pos = VByte.readDeltas(store.pool, pos, 1, value);
+            pos = VByte.readDeltas(store.pool, pos, 1, value);
+            pos += value[0];
+        }
+        store.size = size;
+        if(size > 0){
+            store.last = store.path(size - 1).getBytes(StandardCharsets.UTF_8);
+        }
+        return store;
+    }
+}
@@ -10,21 +10,20 @@
 
 package ir;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,12 +33,32 @@ import java.util.logging.Logger;
  */
 public class HashedIndex implements Index {
 
-    /** The index as a hashtable. */
-    private HashMap<String,PostingsList> index = new HashMap<String,PostingsList>();
+    /** 
+     *  The index in memory: the terms get dense ids from the lexicon, and
+     *  their postings lists are kept in an array by id.
+     */
+    private TermLexicon lexicon = new TermLexicon(); 
+    private PostingsList[] postingsLists = new PostingsList[1024]; 
+    
+    //The index on disc, once it has been written or read
+    private SegmentReader segment; 
+    
+    //Document lengths and norms, stored next to the segment on disc
+    private CollectionStatistics statistics = new CollectionStatistics(); 
+    
+    //The paths of the documents, likewise
+    private DocumentStore documents = new DocumentStore(); 
+    
+    //The pagerank of the documents, if there is one (see StaticScores)
+    private StaticScores staticScores; 
     
-    //For writing to disc
-    private HashMap<String,String> discIndex = new HashMap<String,String>(); //<word, filepath>
-    private HashMap<String,ObjectOutputStream> discIndexStreams = new HashMap<String,ObjectOutputStream>(); //<word, filepath>
+    //Bigrams of the terms, for wildcard queries. Built when first needed
+    private KGramIndex kgrams; 
+    
+    //The header file of an index on disc, see writeHeader()
+    public static final String HEADER_FILE = "header"; 
+    static final int HEADER_MAGIC = 0x49524958; 
+    static final int FORMAT_VERSION = 2; 
     
     //Where to store the index
     String indexFilePath = "index\\"; 
@@ -50,11 +69,44 @@ public class HashedIndex implements Index {
     boolean readIndex = false; 
     
     //Used for indexing
-    int currentDoc; 
-    HashMap<String,PostingsEntry> entriesBuffer = new HashMap<String, PostingsEntry>(); 
-    HashSet<String> newFileWords = new HashSet<String>(); 
     int numberOfDocs;
-    boolean lastDocument = false; 
+    
+    /** 
+     *  When writing to disc, the postings in memory are flushed as a run
+     *  once they take more than this many bytes. The runs are merged into
+     *  one segment at the end.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20; 
+    long memoryBudget = DEFAULT_MEMORY_BUDGET; 
+    long blockBytes = 0; 
+    int currentDoc = -1; 
+    ArrayList<String> runs = new ArrayList<String>(); 
+    
+    //How the postings on disc are coded. An index read from disc says itself
+    PostingsCodec codec = PostingsCodec.DEFAULT; 
+    
+    /** 
+     *  Longer ranked queries than this (e.g. after relevance feedback) are
+     *  scored term-at-a-time rather than with WAND.
+     */
+    static final int WAND_MAX_TERMS = 8; 
+    
+    /** 
+     *  In COMBINATION ranking, what the best pagerank adds to a document's
+     *  tf-idf score; the others add in proportion to their pagerank.
+     */
+    static final double PAGERANK_WEIGHT = 0.1; 
+    
+    /** 
+     *  Score accumulators of cosineScore(), indexed by docID and kept 
+     *  between queries. A slot only holds a score of the current query if
+     *  its stamp is the query's stamp, so nothing has to be cleared.
+     */
+    private double[] accumulators = new double[0]; 
+    private int[] stamps = new int[0]; 
+    private int stamp = 0; 
+    /** The docIDs with an accumulator in the current query. */
+    private int[] touched = new int[0]; 
 
 
     
@@ -82,129 +134,246 @@ public class HashedIndex implements Index {
         }
     }
     /**
-     *  Inserts this token in the index.
+     *  Inserts this token in the index. 
+     *  
+     *  When the index goes to disc the postings are built in memory a block
+     *  at a time (SPIMI): once a block is over the memory budget it is
+     *  flushed as a sorted run before the next document starts, and 
+     *  finalFlushAndCloseStreams() merges the runs into one segment.
      */
     public void insert( String token, int docID, int offset ) {
-        if(writeToDisc){
-            try { 
-                insertDisc(token, docID, offset);
-            } catch (IOException ex) {
-                Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-            } catch (ClassNotFoundException ex) {
-                Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-            }
+        char[] chars = token.toCharArray(); 
+        PostingsList postings = postingsForInsert(chars, 0, chars.length, docID); 
+        long before = postings.memoryUsage(); 
+        postings.addPosition(docID, offset);
+        //The document length is not known yet
+        postings.updateMaxWeight(1, 0); 
+        blockBytes += postings.memoryUsage() - before; 
+    }
+    
+    /**
+     *  Inserts the first count offsets of a token in a document of
+     *  docLength tokens at once. The offsets must be in increasing order.
+     */
+    public void insert( String token, int docID, int[] offsets, int count, int docLength ) {
+        char[] chars = token.toCharArray(); 
+        insert(chars, 0, chars.length, docID, offsets, count, docLength); 
+    }
+    
+    /**
+     *  Inserts the first count offsets of the token chars[start..start+
+     *  length-1] like insert(String, int, int[], int, int), without making
+     *  a String of it.
+     */
+    public void insert( char[] chars, int start, int length, int docID, int[] offsets, int count, int docLength ) {
+        PostingsList postings = postingsForInsert(chars, start, length, docID); 
+        long before = postings.memoryUsage(); 
+        for(int i = 0; i < count; i++){
+            postings.addPosition(docID, offsets[i]);
         }
-        else{
-            if(index.get(token) == null){ 
-                index.put(token, new PostingsList()); 
-                PostingsEntry tmpPosting = new PostingsEntry(docID, 0); //Score is 0 for now 
-                tmpPosting.addOffset(offset);
-                index.get(token).add(tmpPosting);
-                //System.out.println("doc: " + docID + " , token: " + token + ", offset: " +  offset);
-
-            }
-            else{
-                if(index.get(token).get(index.get(token).size()-1).docID != docID){ //if it is a new doc, create new posting
-                    PostingsEntry tmpPosting = new PostingsEntry(docID, 0); //Score is 0 for now
-                    tmpPosting.addOffset(offset);
-                    index.get(token).add(tmpPosting);
-                    //System.out.println("doc: " + docID + " , token(IN): " + token + ", offset: " +  offset); 
-                }
-                else{
-                    index.get(token).get(index.get(token).size()-1).addOffset(offset);
-                    //System.out.println("doc(IN): " + docID + " , token(IN): " + token + ", offset: " +  offset); 
+        postings.updateMaxWeight(count, docLength); 
+        blockBytes += postings.memoryUsage() - before; 
+    }
+    
+    /**
+     * Returns the postings list a token of document docID goes into,
+     * creating it if needed. Flushes the block first if a new document
+     * starts and the block is over budget.
+     */
+    private PostingsList postingsForInsert( char[] chars, int start, int length, int docID ) {
+        if(writeToDisc && docID != currentDoc){
+            if(blockBytes > memoryBudget){
+                try {
+                    flushBlock();
+                } catch (IOException ex) {
+                    Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
                 }
-
             }
+            currentDoc = docID; 
+        }
+        int id = lexicon.intern(chars, start, length); 
+        if(id == postingsLists.length){
+            postingsLists = Arrays.copyOf(postingsLists, id*2); 
         }
+        PostingsList postings = postingsLists[id]; 
+        if(postings == null){ 
+            postings = new PostingsList();
+            postingsLists[id] = postings; 
+            blockBytes += 32 + 2*length; //Chars, ids and slots in the lexicon and the array
+        }
+        return postings; 
     }
     
     /**
-     * Insert method when not storing the entire index in main memory. 
-     * @param token
-     * @param docID
-     * @param offset 
+     * Writes the postings in memory as a segment at path, in term order,
+     * and empties the block.
      */
-    private void insertDisc( String token, int docID, int offset ) throws IOException, FileNotFoundException, ClassNotFoundException{
-        if(token.length() < 30){        //Cuz I can! 
-            if(docID != currentDoc){
-                flushEntries(); 
-                currentDoc = docID; 
-            }
-            if(discIndexStreams.get(token) == null){
-                discIndexStreams.put(token, new ObjectOutputStream(new FileOutputStream(indexFilePath+"_"+token)));
-                PostingsEntry tmpPosting = new PostingsEntry(docID, 0);
-                tmpPosting.addOffset(offset);
-                entriesBuffer.put(token, tmpPosting); 
-                newFileWords.add(token); 
-            }
-            else{
-                if(!entriesBuffer.containsKey(token)){
-                    PostingsEntry tmpPosting = new PostingsEntry(docID, 0);
-                    tmpPosting.addOffset(offset);
-                    entriesBuffer.put(token, tmpPosting); 
-                }
-                else{
-                    entriesBuffer.get(token).addOffset(offset);
-                }
+    private void writeBlock(String path) throws IOException {
+        final String[] terms = new String[lexicon.size()]; 
+        Integer[] ids = new Integer[terms.length]; 
+        for(int id = 0; id < terms.length; id++){
+            terms[id] = lexicon.term(id); 
+            ids[id] = id; 
+        }
+        Arrays.sort(ids, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return terms[a].compareTo(terms[b]); 
             }
+        }); 
+        SegmentWriter writer = new SegmentWriter(path, codec); 
+        for(int id: ids){
+            writer.add(terms[id], postingsLists[id].cursor());
         }
+        writer.close(); 
+        lexicon = new TermLexicon(); 
+        postingsLists = new PostingsList[1024]; 
+        blockBytes = 0; 
     }
     
     /**
-     * Writes the postingentries to disc for the current file
+     * Flushes the postings in memory as the next run.
      */
-    public void flushEntries() throws FileNotFoundException, IOException, ClassNotFoundException{
-        for(String key: entriesBuffer.keySet()){
-            discIndexStreams.get(key).writeObject(entriesBuffer.get(key));
-            discIndexStreams.get(key).flush();
-        }
-        entriesBuffer = new HashMap<String, PostingsEntry>(); 
+    private void flushBlock() throws IOException {
+        String runPath = indexFilePath + "run" + runs.size() + "_"; 
+        writeBlock(runPath); 
+        runs.add(runPath); 
     }
     
+    /**
+     * Writes the index to disc as a segment, merging the runs flushed so
+     * far if there are any, and answers queries from the segment from 
+     * then on.
+     */
     @Override
     public void finalFlushAndCloseStreams() {
+        if(!writeToDisc || readIndex) return; 
         try { 
-            flushEntries();
+            if(runs.isEmpty()){
+                writeBlock(indexFilePath); 
+            }
+            else{
+                if(lexicon.size() > 0) flushBlock(); 
+                SegmentMerger.merge(runs, indexFilePath, codec); 
+                runs.clear(); 
+            }
+            segment = new SegmentReader(indexFilePath); 
+            writeHeader(indexFilePath); 
         } catch (IOException ex) {
             Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (ClassNotFoundException ex) {
-            Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        for(String key: discIndexStreams.keySet()){
-            try { 
-                discIndexStreams.get(key).flush(); 
-                discIndexStreams.get(key).close();
-                
-            } catch (IOException ex) {
-                Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-            }
         }
     }
 
     
     /**
-     * Called when there is already an index on disc
+     * Writes the header of the index on disc: a magic number and format
+     * version, the document store and the collection statistics. With the
+     * segment it is all that is needed to open the index again.
+     */
+    private void writeHeader(String path) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path + HEADER_FILE), 1 << 16)); 
+        try {
+            out.writeInt(HEADER_MAGIC); 
+            out.writeInt(FORMAT_VERSION); 
+            documents.write(out); 
+            statistics.write(out); 
+        } finally {
+            out.close(); 
+        }
+    }
+    
+    /**
+     * Called when there is already an index on disc. Only the header and
+     * the segment are read; the documents themselves are not needed.
      */
     private void readIndex() throws FileNotFoundException, IOException {
-        File files = new File(readIndexPath);
-        if(files.isDirectory()){
-            int counter = 0; 
-            for(File f: files.listFiles()){
-                discIndexStreams.put(f.getName().substring(1),  null);
-                //discIndexStreams.get(f.getName().substring(1)).close(); 
+        DataInputStream in = openHeader(new File(readIndexPath + HEADER_FILE)); 
+        try {
+            documents = DocumentStore.read(in); 
+            statistics = CollectionStatistics.read(in); 
+        } finally {
+            in.close(); 
+        }
+        segment = new SegmentReader(readIndexPath); 
+        if(new File(readIndexPath + StaticScores.FILE).exists()){
+            staticScores = StaticScores.map(readIndexPath + StaticScores.FILE); 
+        }
+    }
+    
+    /**
+     * Reads the paths of the documents of the index on disc in directory,
+     * without opening the index.
+     */
+    public static DocumentStore readDocuments(File directory) throws IOException {
+        DataInputStream in = openHeader(new File(directory, HEADER_FILE)); 
+        try {
+            return DocumentStore.read(in); 
+        } finally {
+            in.close(); 
+        }
+    }
+    
+    /**
+     * Opens the header file of an index, positioned after its magic number
+     * and format version.
+     */
+    private static DataInputStream openHeader(File header) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(header), 1 << 16)); 
+        try {
+            if(in.readInt() != HEADER_MAGIC || in.readInt() != FORMAT_VERSION){
+                throw new IOException("No index of this version in " + header.getParent()); 
             }
+        } catch (IOException ex) {
+            in.close(); 
+            throw ex; 
         }
+        return in; 
+    }
+
+    public CollectionStatistics getStatistics() {
+        return statistics; 
+    }
+
+    public DocumentStore getDocuments() {
+        return documents; 
     }
     
     /**
      *  Returns all the words in the index.
      */
     public Iterator<String> getDictionary() {
-	Set<String> dictionary = index.keySet(); 
-        Iterator wordsIterator = dictionary.iterator(); 
-        
-        return wordsIterator;
+        if(segment != null) return segment.terms(); 
+        return lexicon.terms(); 
+    }
+    
+    /**
+     *  Returns the words starting with prefix, in sorted order.
+     */
+    public Iterator<String> getDictionary( String prefix ) {
+        if(segment != null) return segment.termsWithPrefix(prefix); 
+        ArrayList<String> words = new ArrayList<String>(); 
+        Iterator<String> terms = lexicon.terms(); 
+        while(terms.hasNext()){
+            String word = terms.next(); 
+            if(word.startsWith(prefix)) words.add(word); 
+        }
+        Collections.sort(words); 
+        return words.iterator(); 
+    }
+    
+    /**
+     *  Returns the words from from (inclusive) to to (exclusive), in 
+     *  sorted order.
+     */
+    public Iterator<String> getDictionary( String from, String to ) {
+        if(segment != null) return segment.terms(from, to); 
+        ArrayList<String> words = new ArrayList<String>(); 
+        Iterator<String> terms = lexicon.terms(); 
+        while(terms.hasNext()){
+            String word = terms.next(); 
+            if(word.compareTo(from) >= 0 && word.compareTo(to) < 0) words.add(word); 
+        }
+        Collections.sort(words); 
+        return words.iterator(); 
     }
 
 
@@ -213,352 +382,511 @@ public class HashedIndex implements Index {
      *  if the term is not in the index.
      */
     public PostingsList getPostings( String token ) {
-	return index.get(token);
+        if(segment != null) return segment.getPostings(token); 
+        return inMemory(token); 
+    }
+    
+    /**  The postings list of token in memory, or null. */
+    private PostingsList inMemory( String token ) {
+        int id = lexicon.find(token); 
+        return id < 0 ? null : postingsLists[id]; 
     }
-
 
     /**
-     *  Searches the index for postings matching the query.
+     *  Opens a cursor over the postings for a specific term, or returns
+     *  null if the term is not in the index. A term with wildcards stands
+     *  for all the terms it matches, see expandWildcard().
      */
-    public PostingsList search( Query query, int queryType, int rankingType, int structureType ) {
-        if(query.terms.size() == 1 && (queryType != 2)){
-            if(writeToDisc){
-                //if(discIndexStreams.get(query.terms.getFirst()) != null){
-                if(discIndexStreams.keySet().contains(query.terms.getFirst())){
-                    PostingsList tmpList = new PostingsList(); 
-                    try { 
-                        FileInputStream fIn = new FileInputStream(readIndexPath +"_"+(query.terms.getFirst()));
-                        ObjectInputStream oIn = new ObjectInputStream(fIn); 
-                        
-                        //System.out.println("Reading from "+ readIndexPath +"_"+(query.terms.getFirst())); 
-                        
-                        PostingsEntry tmpEntry = (PostingsEntry) oIn.readObject();
-                        try{
-                            while(tmpEntry != null){
-                                tmpList.add(tmpEntry);
-                                tmpEntry = (PostingsEntry) oIn.readObject();
-                            }
-                        } catch(Exception e){}; 
-                        
-                        return tmpList; 
-                    } catch (FileNotFoundException ex) {
-                        Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-                    } catch (IOException ex) {
-                        Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-                    } catch (ClassNotFoundException ex) {
-                        Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
-                else
-                    return new PostingsList(); 
-            }
-            else{
-                if(index.get(query.terms.getFirst()) != null)
-                    return index.get(query.terms.getFirst());
-                else
-                    return new PostingsList(); 
+    private PostingsCursor openCursor( String token ) {
+        if(KGramIndex.isWildcard(token)){
+            ArrayList<String> terms = expandWildcard(token); 
+            if(terms.isEmpty()) return null; 
+            PostingsCursor[] cursors = new PostingsCursor[terms.size()]; 
+            for(int i = 0; i < cursors.length; i++){
+                cursors[i] = openCursor(terms.get(i)); 
             }
+            return cursors.length == 1 ? cursors[0] : new UnionCursor(cursors, statistics.numberOfDocuments()); 
         }
-        else if(query.terms.size() > 1 || (queryType == 2))
-        {
-            for(String term: query.terms){
-                if(writeToDisc){
-                    if(!discIndexStreams.keySet().contains(query.terms.getFirst())){
-                        return new PostingsList(); 
-                    }
-                }
-                else{
-                    if(index.get(term) == null){
-                        return new PostingsList(); 
-                    }
-                }
-            }
-            switch (queryType) {
-                case 0: {
-                try {
-                    //Intersection query
-                    return intersectionQuery(query, queryType, rankingType, structureType);
-                } catch (IOException ex) {
-                    Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-                } catch (ClassNotFoundException ex) {
-                    Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            } 
-                case 1: //Phrase query
-                    return phraseQuery(query, queryType, rankingType, structureType); 
-                case 2: {
-                try {
-                    //Ranked query
-                    return rankedQuery(query, queryType, rankingType, structureType);
-                } catch (IOException ex) {
-                    Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-                } catch (ClassNotFoundException ex) {
-                    Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            } 
-                default: 
-                    return null; 
+        if(segment != null) return segment.cursor(token); 
+        PostingsList postings = inMemory(token);
+        return postings == null ? null : postings.cursor();
+    }
+
+
+    /**
+     *  Returns the terms in the index matching a pattern in which * stands
+     *  for any sequence of characters, in sorted order. A pattern that only
+     *  ends with * is a prefix, which the dictionary finds by itself; other
+     *  patterns go through the bigram index, which is built on first use.
+     */
+    private ArrayList<String> expandWildcard( String pattern ) {
+        int star = pattern.indexOf(KGramIndex.WILDCARD); 
+        ArrayList<String> terms = new ArrayList<String>(); 
+        if(star == pattern.length() - 1){
+            Iterator<String> words = getDictionary(pattern.substring(0, star)); 
+            while(words.hasNext()){
+                terms.add(words.next()); 
             }
+            return terms; 
         }
-        else
-            return new PostingsList();
-        
-        //Because Netbeans is forcing me :E 
-        return null;
+        int vocabulary = (segment != null) ? segment.numberOfTerms() : lexicon.size(); 
+        //Terms are only ever added, so a changed size means a stale bigram index
+        if(kgrams == null || kgrams.size() != vocabulary){
+            kgrams = new KGramIndex(getDictionary()); 
+        }
+        return kgrams.expand(pattern); 
     }
 
-    
     /**
-     *  Performs intersection query on several words
+     *  Searches the index for postings matching the query.
      */
-    private PostingsList intersectionQuery(Query query, int queryType, int rankingType, int structureType) throws IOException, FileNotFoundException, ClassNotFoundException{
-        return intersectionSearch(query.terms); 
+    public PostingsList search( Query query, int queryType, int rankingType, int structureType ) {
+        return search(query, queryType, rankingType, structureType, Integer.MAX_VALUE);
     }
 
     /**
-     * 
+     *  Searches the index for postings matching the query. Ranked queries
+     *  only return the k best documents, see TopScores.
      */
-    private PostingsList phraseQuery(Query query, int queryType, int rankingType, int structureType) {
-        try { 
-            return phraseSearch(query.terms);
-        } catch (IOException ex) {
-            Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (ClassNotFoundException ex) {
-            Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
+    public PostingsList search( Query query, int queryType, int rankingType, int structureType, int k ) {
+        if(query.terms.size() == 0){
+            return new PostingsList();
+        }
+        if(query.terms.size() == 1 && queryType != RANKED_QUERY){
+            String term = query.terms.getFirst();
+            if(KGramIndex.isWildcard(term)){
+                PostingsCursor cursor = openCursor(term);
+                return cursor == null ? new PostingsList() : PostingsList.copyOf(cursor);
+            }
+            PostingsList postings = getPostings(term);
+            return postings == null ? new PostingsList() : postings;
+        }
+        PostingsCursor[] cursors = new PostingsCursor[query.terms.size()];
+        int i = 0;
+        for(String term: query.terms){
+            cursors[i] = openCursor(term);
+            //One missing term means no document matches
+            if(cursors[i] == null){
+                return new PostingsList();
+            }
+            i++;
+        }
+        switch (queryType) {
+            case INTERSECTION_QUERY:
+                return intersectionSearch(cursors);
+            case PHRASE_QUERY:
+                return phraseSearch(cursors);
+            case RANKED_QUERY:
+                return rankedQuery(query, cursors, rankingType, structureType, k);
+            default:
+                return null;
         }
-        return null;
     }
 
-    private PostingsList rankedQuery(Query query, int queryType, int rankingType, int structureType) throws IOException, FileNotFoundException, ClassNotFoundException {
-        PostingsList matchingDocuments = new PostingsList();
+    /**
+     * Ranks the documents with any of the query terms. TF_IDF ranks them by
+     * cosine score, PAGERANK by pagerank alone, and COMBINATION adds the
+     * pagerank, scaled by PAGERANK_WEIGHT/the largest pagerank, to the 
+     * cosine score as a prior. The prior of a document is at most 
+     * PAGERANK_WEIGHT, which bounds it like one more query term, so the
+     * pruning of cosineScore() and wandScore() still holds. Without 
+     * static scores (see setStaticScores()) the documents are ranked by 
+     * TF_IDF, with a warning.
+     */
+    private PostingsList rankedQuery(Query query, PostingsCursor[] cursors, int rankingType, int structureType, int k) {
+        TopScores top = new TopScores(k);
+        if(rankingType != TF_IDF && staticScores == null){
+            Logger.getLogger(HashedIndex.class.getName()).log(Level.WARNING, 
+                    "No pagerank scores are loaded, ranking by tf-idf instead"); 
+            rankingType = TF_IDF; 
+        }
+        double weight = 0;
+        if(rankingType != TF_IDF && staticScores != null && staticScores.max() > 0){
+            weight = PAGERANK_WEIGHT/staticScores.max();
+        }
+        if(rankingType == PAGERANK){
+            PostingsCursor cursor = cursors.length == 1 ? cursors[0] : new UnionCursor(cursors, statistics.numberOfDocuments());
+            for(int docID = cursor.nextDoc(); docID != PostingsCursor.NO_MORE_DOCS; docID = cursor.nextDoc()){
+                top.add(docID, prior(docID, weight));
+            }
+        }
         //Assignment 2.1
-        if(query.terms.size() == 1){
-            matchingDocuments = index.get(query.terms.getFirst()); 
-            for(int i = 0; i < matchingDocuments.size(); i++){
-                calculateTFIDF(matchingDocuments.get(i), query.terms.getFirst()); 
+        else if(cursors.length == 1){
+            PostingsCursor cursor = cursors[0];
+            double idf = calculateQueryScore(cursor.documentFrequency());
+            while(cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS){
+                top.add(cursor.docID(), prior(cursor.docID(), weight) + calculateTFIDF(cursor.docID(), cursor.frequency(), idf));
             }
-            Collections.sort(matchingDocuments.getList());
         }
         //Assignment 2.2
+        else if(k == Integer.MAX_VALUE || cursors.length > WAND_MAX_TERMS){
+            cosineScore(cursors, top, k, weight);
+        }
         else{
-            matchingDocuments = cosineScore(query.terms); 
-            Collections.sort(matchingDocuments.getList()); 
+            wandScore(cursors, top, weight);
         }
-        return matchingDocuments; 
+        return top.toPostingsList();
     }
-    
+
     /**
-     * Calculates the tf_idf of the a document
-     * @param matchingDocuments 
+     * The prior of a document: its pagerank times weight.
      */
-    private void calculateTFIDF(PostingsEntry posting, String term) {
-        double idf = Math.log(docIDs.size()/index.get(term).size()); //ln(N/df_t)
-        int docLength = docLengths.get(""+posting.docID); 
-        int termFreq = posting.getTermFrequency(); 
-        posting.score = termFreq* idf / docLength; 
+    private double prior(int docID, double weight) {
+        return weight == 0 ? 0 : weight * staticScores.score(docID);
     }
-    
+
     /**
-     * 
-     * @param get
-     * @param terms 
-     */
-    private PostingsList cosineScore(LinkedList<String> terms) {
-        PostingsList rankedDocuments = new PostingsList(); 
-        HashMap<Integer, Double> scores = new HashMap<Integer, Double>(); 
-        for(String queryTerm: terms){
-           double queryScore = calculateQueryScore(queryTerm); 
-           PostingsList tmpPostingsList = index.get(queryTerm); 
-           for(int i = 0; i < tmpPostingsList.size(); i++){
-               int docID = tmpPostingsList.get(i).docID; 
-               double wfScore = calculateWfScore(tmpPostingsList.get(i), queryTerm); 
-               
-               if(scores.get(docID) == null){
-                   scores.put(docID, Double.valueOf(0)); 
-               }
-               double oldScore = scores.get(docID); 
-               double newScore = oldScore + (wfScore * queryScore); 
-               scores.put(docID, newScore); 
-           }
-       }
-       for(int docID: scores.keySet()){
-           rankedDocuments.add(new PostingsEntry(docID, scores.get(docID)));
-       }
-       return rankedDocuments; 
+     * Calculates the tf_idf of the a document
+     */
+    private double calculateTFIDF(int docID, int termFreq, double idf) {
+        return calculateWfScore(docID, termFreq) * idf;
     }
-    
+
     /**
-     * Calculates w_t,q
-     * @return 
+     * Term-at-a-time cosine scoring over the postings of all query terms,
+     * adding up the scores in the accumulator array.
+     * 
+     * If only the top k are wanted, the terms go by decreasing bound (see
+     * wandScore()). Once the bounds of the terms left add up to less than
+     * the k:th best score so far, a document without an accumulator cannot
+     * make it any more, so from then on only existing accumulators are 
+     * updated. An accumulator starts at the document's prior, so the
+     * largest prior is part of what is left for a new one. A document that
+     * would have got an accumulator still matches; its slot is stamped with
+     * -stamp so it is counted once.
      */
-    private double calculateQueryScore(String term){
-        double queryScore = Math.log(docIDs.size()/(index.get(term).size()));  
-        return queryScore; 
+    private void cosineScore(PostingsCursor[] cursors, TopScores top, int k, double weight) {
+        int n = cursors.length;
+        double[] queryScores = new double[n];
+        double[] bounds = new double[n];
+        double remaining = weight == 0 ? 0 : weight * staticScores.max();
+        for(int i = 0; i < n; i++){
+            queryScores[i] = calculateQueryScore(cursors[i].documentFrequency());
+            bounds[i] = cursors[i].maxWeight() * queryScores[i];
+            remaining += bounds[i];
+        }
+        Integer[] order = new Integer[n];
+        for(int i = 0; i < n; i++){
+            order[i] = i;
+        }
+        if(k != Integer.MAX_VALUE){
+            final double[] b = bounds;
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer x, Integer y) {
+                    return Double.compare(b[y], b[x]);
+                }
+            });
+        }
+        int numberOfDocuments = Math.max(statistics.numberOfDocuments(), 1);
+        if(accumulators.length < numberOfDocuments){
+            growAccumulators(numberOfDocuments);
+        }
+        if(++stamp == Integer.MAX_VALUE){
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        int count = 0;
+        int passedOver = 0;
+        boolean newAccumulators = true;
+        for(int t: order){
+            if(newAccumulators && k != Integer.MAX_VALUE && count >= k
+                    && remaining < kthBest(count, k)){
+                newAccumulators = false;
+            }
+            remaining -= bounds[t];
+            PostingsCursor cursor = cursors[t];
+            double queryScore = queryScores[t];
+            for(int docID = cursor.nextDoc(); docID != PostingsCursor.NO_MORE_DOCS; docID = cursor.nextDoc()){
+                if(docID >= accumulators.length){
+                    growAccumulators(docID + 1);
+                }
+                if(stamps[docID] != stamp){
+                    if(!newAccumulators){
+                        if(stamps[docID] != -stamp){
+                            stamps[docID] = -stamp;
+                            passedOver++;
+                        }
+                        continue;
+                    }
+                    stamps[docID] = stamp;
+                    accumulators[docID] = prior(docID, weight);
+                    touched[count++] = docID;
+                }
+                accumulators[docID] += calculateWfScore(docID, cursor.frequency()) * queryScore;
+            }
+        }
+        for(int i = 0; i < count; i++){
+            top.add(touched[i], accumulators[touched[i]]);
+        }
+        top.countMatches(passedOver);
     }
-    
-    private double calculateWfScore(PostingsEntry posting, String term){
-        double wfScore = ((double) posting.getTermFrequency())/(double)docLengths.get(""+posting.docID);
-        return wfScore; 
+
+    /**  The k:th best score among the first count touched accumulators. */
+    private double kthBest(int count, int k) {
+        TopScores best = new TopScores(k);
+        for(int i = 0; i < count; i++){
+            best.add(touched[i], accumulators[touched[i]]);
+        }
+        return best.threshold();
     }
-    
 
-    private PostingsList intersectionSearch(LinkedList<String> wordsInQuery) throws FileNotFoundException, IOException, ClassNotFoundException {
-        PostingsList postings = new PostingsList(); 
-        int[] currentPostings = new int[wordsInQuery.size()]; 
-        ArrayList<Iterator> postingsIterators = new ArrayList<Iterator>(); 
-        ArrayList<LinkedList<PostingsEntry>> postingsFromDisc = null; 
-        if(writeToDisc){
-            postingsFromDisc = new ArrayList<LinkedList<PostingsEntry>>(); 
-        }
-        
-        //Get iterators for each postingslist for each term
-        int i = 0; 
-        for(String searchWord: wordsInQuery){
-            if(writeToDisc){
-                LinkedList<PostingsEntry> list = new LinkedList<PostingsEntry>();
-                //FileInputStream fIn = new FileInputStream(discIndex.get(searchWord)); 
-                FileInputStream fIn = new FileInputStream(indexFilePath+"_"+searchWord);
-                //System.out.println("checking for file "+indexFilePath+"_"+searchWord); 
-                
-                ObjectInputStream oIn = new ObjectInputStream(fIn); 
-                PostingsEntry tmp = (PostingsEntry) oIn.readObject(); 
-                try{
-                    while(tmp != null){
-                        list.addLast(tmp); 
-                        tmp = (PostingsEntry) oIn.readObject(); 
+    private void growAccumulators(int capacity) {
+        capacity = Math.max(capacity, 2*accumulators.length);
+        accumulators = Arrays.copyOf(accumulators, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+        touched = Arrays.copyOf(touched, capacity);
+    }
+
+    /**
+     * Document-at-a-time cosine scoring with WAND pruning. The score a term
+     * can add to any document is bounded by its largest weight times its
+     * query weight. The cursors are kept ordered by docID, and the pivot is
+     * the first cursor at which the bounds of the cursors up to it add up
+     * to more than the lowest score in the top k. No document before the
+     * pivot's docID can make it, so the cursors before the pivot advance()
+     * straight to it and only documents that may get in are scored. The
+     * largest prior is added to every bound.
+     * 
+     * The documents passed over still match, so the cursors before the 
+     * pivot step to it one document at a time, counting the documents 
+     * they pass, and the documents left once no document can get in are
+     * counted the same way. Stepping only reads docIDs, so the count stays
+     * exact at a fraction of the cost of scoring.
+     */
+    private void wandScore(PostingsCursor[] cursors, TopScores top, double weight) {
+        int n = cursors.length;
+        double priorBound = weight == 0 ? 0 : weight * staticScores.max();
+        double[] queryScores = new double[n];
+        double[] bounds = new double[n];
+        //Indexes of the cursors by increasing docID
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++){
+            queryScores[i] = calculateQueryScore(cursors[i].documentFrequency());
+            bounds[i] = cursors[i].maxWeight() * queryScores[i];
+            cursors[i].nextDoc();
+            order[i] = i;
+        }
+        sortByDocID(cursors, order);
+        while(true){
+            double threshold = top.threshold();
+            double bound = priorBound;
+            int pivot = 0;
+            for(; pivot < n; pivot++){
+                bound += bounds[order[pivot]];
+                if(bound > threshold) break;
+            }
+            if(pivot == n) break;
+            int docID = cursors[order[pivot]].docID();
+            if(docID == PostingsCursor.NO_MORE_DOCS) break;
+            if(cursors[order[0]].docID() == docID){
+                //Add up in query order, as cosineScore() does, so both give the same scores
+                double score = prior(docID, weight);
+                for(int i = 0; i < n; i++){
+                    if(cursors[i].docID() == docID){
+                        score += calculateWfScore(docID, cursors[i].frequency()) * queryScores[i];
+                        cursors[i].nextDoc();
                     }
                 }
-                catch(Exception e){}
-                postingsFromDisc.add(i,list); 
-                postingsIterators.add(i, postingsFromDisc.get(i).iterator()); 
+                top.add(docID, score);
             }
             else{
-                postingsIterators.add(i, index.get(searchWord).getIterator());
+                top.countMatches(passOver(cursors, order, pivot, docID));
             }
-            PostingsEntry tmpPostingsEntry = (PostingsEntry) postingsIterators.get(i).next();
-            currentPostings[i] = tmpPostingsEntry.docID; 
-            i++; 
-        }
-        
-        //Intersection algorithms
-        //Keep iterating until iterators reach end of list
-        boolean done = false; 
-        while(!done){
-            int minIndex = 0; 
-            for(int j = 1; j < currentPostings.length; j++){
-                if(currentPostings[j] < currentPostings[minIndex]){
-                    minIndex = j; 
-                }
+            sortByDocID(cursors, order);
+        }
+        top.countMatches(passOver(cursors, order, n, PostingsCursor.NO_MORE_DOCS));
+    }
+
+    /**
+     * Moves the cursors order[0..m-1] on to the first document from to on,
+     * and returns the number of documents before it that any of them was on.
+     */
+    private static int passOver(PostingsCursor[] cursors, int[] order, int m, int to) {
+        int count = 0;
+        while(true){
+            int docID = to;
+            for(int j = 0; j < m; j++){
+                docID = Math.min(docID, cursors[order[j]].docID());
             }
-            
-            //Check if all are alike. If yes, add to postings. Else do nothing and continue
-            boolean match = true; 
-            for(int k = 1; k < currentPostings.length; k ++){
-                if(currentPostings[k] != currentPostings[0]){
-                    match = false; 
-                    break; 
+            if(docID >= to) return count;
+            count++;
+            for(int j = 0; j < m; j++){
+                if(cursors[order[j]].docID() == docID){
+                    cursors[order[j]].nextDoc();
                 }
             }
-            if(match) {
-                postings.add(new PostingsEntry(currentPostings[0], 0));
-            }
-            if(postingsIterators.get(minIndex).hasNext()){
-                PostingsEntry tmpPostingsEntry = (PostingsEntry) postingsIterators.get(minIndex).next();
-                currentPostings[minIndex] = tmpPostingsEntry.docID; 
+        }
+    }
+
+    /**
+     * Insertion sort of the cursor indexes by the cursors' docIDs; only a
+     * few cursors move between calls.
+     */
+    private static void sortByDocID(PostingsCursor[] cursors, int[] order) {
+        for(int i = 1; i < order.length; i++){
+            int c = order[i];
+            int docID = cursors[c].docID();
+            int j = i - 1;
+            while(j >= 0 && cursors[order[j]].docID() > docID){
+                order[j+1] = order[j];
+                j--;
             }
-            else done = true; 
+            order[j+1] = c;
         }
-        return postings; 
     }
-    
-    private PostingsList phraseSearch(LinkedList<String> wordsInQuery) throws FileNotFoundException, IOException, ClassNotFoundException {
-        PostingsList postings = new PostingsList(); 
-        PostingsEntry[] currentPostings = new PostingsEntry[wordsInQuery.size()]; 
-        ArrayList<Iterator> postingsIterators = new ArrayList<Iterator>(); 
-        ArrayList<LinkedList<PostingsEntry>> postingsFromDisc = null; 
-        if(writeToDisc){
-            postingsFromDisc = new ArrayList<LinkedList<PostingsEntry>>(); 
-        }
-        
-        //Get iterators for each postingslist for each term
-        int i = 0; 
-        for(String searchWord: wordsInQuery){
-            if(writeToDisc){
-                LinkedList<PostingsEntry> list = new LinkedList<PostingsEntry>();
-                //FileInputStream fIn = new FileInputStream(discIndex.get(searchWord)); 
-                FileInputStream fIn = new FileInputStream(indexFilePath+"_"+searchWord);
-                //System.out.println("checking for file "+indexFilePath+"_"+searchWord); 
-                
-                ObjectInputStream oIn = new ObjectInputStream(fIn); 
-                PostingsEntry tmp = (PostingsEntry) oIn.readObject(); 
-                try{
-                    while(tmp != null){
-                        list.addLast(tmp); 
-                        tmp = (PostingsEntry) oIn.readObject(); 
-                    }
-                }
-                catch(Exception e){}
-                postingsFromDisc.add(i,list); 
-                postingsIterators.add(i, postingsFromDisc.get(i).iterator()); 
+
+    /**
+     * Calculates w_t,q
+     * @return
+     */
+    private double calculateQueryScore(int df){
+        return statistics.idf(df); //ln(N/df_t)
+    }
+
+    private double calculateWfScore(int docID, int termFreq){
+        return termFreq * (double) statistics.docNorm(docID);
+    }
+
+
+    private PostingsList intersectionSearch(PostingsCursor[] cursors) {
+        PostingsList postings = new PostingsList();
+        cursors = rarestFirst(cursors);
+        int doc = leapfrog(cursors, cursors[0].nextDoc());
+        while(doc != PostingsCursor.NO_MORE_DOCS){
+            postings.addPosting(doc, 0);
+            doc = leapfrog(cursors, cursors[0].nextDoc());
+        }
+        return postings;
+    }
+
+    private PostingsList phraseSearch(PostingsCursor[] cursors) {
+        PostingsList postings = new PostingsList();
+        int[] candidates = new int[16];
+        //phraseMatches() needs the query order, the intersection does not
+        PostingsCursor[] ordered = rarestFirst(cursors);
+        int doc = leapfrog(ordered, ordered[0].nextDoc());
+        while(doc != PostingsCursor.NO_MORE_DOCS){
+            if(candidates.length < cursors[0].frequency()){
+                candidates = new int[cursors[0].frequency()];
             }
-            else{
-                postingsIterators.add(i, index.get(searchWord).getIterator());
+            if(phraseMatches(cursors, candidates)){
+                postings.addPosting(doc, 0);
             }
-            //postingsIterators.add(i, index.get(searchWord).getIterator());
-            PostingsEntry tmpPostingsEntry = (PostingsEntry) postingsIterators.get(i).next();
-            currentPostings[i] = tmpPostingsEntry; 
-            i++; 
-        }
-        
-        //Intersection algorithms
-        //Keep iterating until iterators reach end of list
-        boolean done = false; 
-        while(!done){
-            int minIndex = 0; 
-            for(int j = 1; j < currentPostings.length; j++){
-                if(currentPostings[j].docID < currentPostings[minIndex].docID){
-                    minIndex = j; 
-                }
+            doc = leapfrog(ordered, ordered[0].nextDoc());
+        }
+        return postings;
+    }
+
+    /**
+     * The cursors sorted by increasing document frequency, so the rarest
+     * term proposes the candidates and the second rarest is checked first.
+     */
+    private static PostingsCursor[] rarestFirst(PostingsCursor[] cursors) {
+        PostingsCursor[] ordered = cursors.clone();
+        Arrays.sort(ordered, new Comparator<PostingsCursor>() {
+            public int compare(PostingsCursor a, PostingsCursor b) {
+                return Integer.compare(a.documentFrequency(), b.documentFrequency());
             }
-            
-            //Check if all are alike. If yes, add to postings. Else do nothing and continue
-            boolean match = true; 
-            for(int k = 1; k < currentPostings.length; k ++){
-                if(currentPostings[k].docID != currentPostings[0].docID){
-                    match = false; 
-                    break; 
+        });
+        return ordered;
+    }
+
+    /**
+     * Finds the first document from doc on that all cursors contain and
+     * leaves every cursor on it. The first cursor proposes a candidate and
+     * the others advance() to it; whenever one overshoots, its docID
+     * becomes the next candidate, so whole runs of postings are skipped
+     * instead of stepped through.
+     * @return the document, or NO_MORE_DOCS if the intersection is exhausted
+     */
+    private static int leapfrog(PostingsCursor[] cursors, int doc) {
+        while(doc != PostingsCursor.NO_MORE_DOCS){
+            int k = 1;
+            for(; k < cursors.length; k++){
+                int d = cursors[k].advance(doc);
+                if(d != doc){
+                    doc = cursors[0].advance(d);
+                    break;
                 }
             }
-            if(match) {
-                //System.out.println("Match on doc: " + currentPostings[0].docID); 
-                //Check if phrase occurs by going through iterators and checking offsets
-                boolean phraseMatch = true; 
-                HashSet<Integer> offsetsFirstWord = currentPostings[0].getOffsets(); 
-                
-                for(int offset: offsetsFirstWord){
-                    phraseMatch = true; 
-                    for(int k = 1; k < wordsInQuery.size(); k++){
-                        if(!currentPostings[k].isAtPosition(offset+k)){
-                            phraseMatch = false; 
-                            break; 
-                        }
-                    }
-                    if(phraseMatch) break; 
-                }
-                if(phraseMatch)postings.add(new PostingsEntry(currentPostings[0].docID, 0));
+            if(k == cursors.length){
+                return doc;
             }
-            if(postingsIterators.get(minIndex).hasNext()){
-                PostingsEntry tmpPostingsEntry = (PostingsEntry) postingsIterators.get(minIndex).next();
-                currentPostings[minIndex] = tmpPostingsEntry; 
+        }
+        return PostingsCursor.NO_MORE_DOCS;
+    }
+
+    /**
+     * True if the terms of the cursors, all positioned on the same document,
+     * occur at consecutive offsets somewhere in it. The possible start
+     * offsets of the phrase are merged with the positions of one term at
+     * a time, and the check stops as soon as no start offset is left.
+     */
+    private boolean phraseMatches(PostingsCursor[] cursors, int[] candidates){
+        int count = cursors[0].frequency();
+        System.arraycopy(cursors[0].positions(), 0, candidates, 0, count);
+        for(int k = 1; k < cursors.length && count > 0; k++){
+            count = intersectPositions(candidates, count, cursors[k].positions(), cursors[k].frequency(), k);
+        }
+        return count > 0;
+    }
+
+    /**
+     * Keeps the candidates c for which c+shift is among the first n
+     * positions. Both arrays are sorted, so this is a merge; galloping
+     * lets it jump ahead when there are far fewer candidates than positions.
+     * @return the number of candidates kept, moved to the front of the array
+     */
+    static int intersectPositions(int[] candidates, int count, int[] positions, int n, int shift){
+        int kept = 0;
+        int j = 0;
+        for(int i = 0; i < count && j < n; i++){
+            int target = candidates[i] + shift;
+            j = gallop(positions, j, n, target);
+            if(j < n && positions[j] == target){
+                candidates[kept++] = candidates[i];
             }
-            else done = true; 
         }
-        return postings; 
+        return kept;
+    }
+
+    /**
+     * Returns the first index in the sorted range a[from..to) whose value
+     * is at least target, or to if there is none. The range is probed at
+     * exponentially growing distances from 'from' and then binary searched,
+     * so the cost is logarithmic in the distance moved.
+     */
+    static int gallop(int[] a, int from, int to, int target){
+        if(from >= to || a[from] >= target) return from;
+        int lo = from;
+        int step = 1;
+        int hi = lo + step;
+        while(hi < to && a[hi] < target){
+            lo = hi;
+            step <<= 1;
+            hi = lo + step;
+        }
+        if(hi > to) hi = to;
+        lo++;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(a[mid] < target) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
     }
+
     /**
-     *  No need for cleanup in a HashedIndex.
+     *  Closes the segment on disc, if any.
      */
     public void cleanup() {
+        if(segment != null){
+            try {
+                segment.close();
+            } catch (IOException ex) {
+                Logger.getLogger(HashedIndex.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
     }
     
     /**
@@ -567,12 +895,14 @@ public class HashedIndex implements Index {
      */
     public String toString(){
         StringBuilder sb = new StringBuilder(); 
-        for(String key: index.keySet()){
-            sb.append(key + ": "); 
-            for(PostingsEntry pe: index.get(key).getList()){
-                sb.append(pe.docID + " [ ");
-                for(int os: pe.getOffsets()){
-                    sb.append(os + ","); 
+        for(int id = 0; id < lexicon.size(); id++){
+            sb.append(lexicon.term(id) + ": "); 
+            PostingsCursor cursor = postingsLists[id].cursor(); 
+            while(cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS){
+                sb.append(cursor.docID() + " [ ");
+                int[] offsets = cursor.positions(); 
+                for(int k = 0; k < cursor.frequency(); k++){
+                    sb.append(offsets[k] + ","); 
                 }
                 sb.append(" ], "); 
             }
@@ -585,4 +915,24 @@ public class HashedIndex implements Index {
     public void setNumberOfDocs(int n) {
         this.numberOfDocs = n; 
     }
+
+    @Override
+    public void setMemoryBudget(long bytes) {
+        this.memoryBudget = bytes; 
+    }
+
+    @Override
+    public void setPostingsCodec(PostingsCodec codec) {
+        this.codec = codec; 
+    }
+
+    /**
+     * Sets the pagerank of the documents, by docID, for the PAGERANK and 
+     * COMBINATION rankings. An index read from disc uses the scores next
+     * to it, if there are any.
+     */
+    @Override
+    public void setStaticScores(StaticScores scores) {
+        this.staticScores = scores; 
+    }
 }
@@ -9,7 +9,6 @@
 
 package ir;
 
-import java.util.HashMap;
 import java.util.Iterator;
 
 public interface Index {
@@ -32,16 +31,23 @@ public interface Index {
     public static final int BIGRAM = 1; 
     public static final int SUBPHRASE = 2; 
 	
-    public HashMap<String, String> docIDs = new HashMap<String,String>();
-    public HashMap<String,Integer> docLengths = new HashMap<String,Integer>();
-
     public void insert( String token, int docID, int offset );
+    public void insert( String token, int docID, int[] offsets, int count, int docLength );
+    public void insert( char[] chars, int start, int length, int docID, int[] offsets, int count, int docLength );
     public Iterator<String> getDictionary();
+    public Iterator<String> getDictionary( String prefix );
+    public Iterator<String> getDictionary( String from, String to );
     public PostingsList getPostings( String token );
     public void setNumberOfDocs(int n); 
+    public void setMemoryBudget(long bytes); 
+    public void setPostingsCodec(PostingsCodec codec); 
+    public void setStaticScores(StaticScores scores); 
     public void finalFlushAndCloseStreams();
+    public CollectionStatistics getStatistics();
+    public DocumentStore getDocuments();
 
     public PostingsList search( Query query, int queryType, int rankingType, int structureType );
+    public PostingsList search( Query query, int queryType, int rankingType, int structureType, int k );
     public void cleanup();
 
 }
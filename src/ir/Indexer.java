@@ -11,13 +11,25 @@ package ir;
 
 import java.io.File;
 import java.io.Reader;
-import java.io.FileReader;
 import java.io.StringReader;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import org.apache.pdfbox.cos.COSDocument;
 import org.apache.pdfbox.pdfparser.*;
 import org.apache.pdfbox.util.PDFTextStripper;
@@ -37,6 +49,20 @@ public class Indexer {
     
     private boolean readIndex = false; 
 
+    /** The number of threads reading and tokenizing documents. */
+    private int numberOfWorkers = Runtime.getRuntime().availableProcessors();
+
+    /** Files larger than this are mapped rather than read when tokenized. */
+    private static final int MAP_THRESHOLD = 1 << 16;
+
+    /** How many documents per worker may wait to be inserted into the index. */
+    private static final int QUEUE_LENGTH_PER_WORKER = 4;
+
+    /** Marks the end of the queue of parsed documents. */
+    private static final Future<DocumentPostings> END_OF_FILES = new FutureTask<DocumentPostings>( new Runnable() {
+	    public void run() {}
+	}, null );
+
 
     /* ----------------------------------------------- */
 
@@ -52,6 +78,14 @@ public class Indexer {
     }
 
 
+    /**
+     *  Sets the number of threads that read and tokenize documents.
+     */
+    public void setNumberOfWorkers( int n ) {
+	numberOfWorkers = Math.max( 1, n );
+    }
+
+
     /* ----------------------------------------------- */
 
 
@@ -70,8 +104,73 @@ public class Indexer {
     /**
      *  Tokenizes and indexes the file @code{f}. If @code{f} is a directory,
      *  all its files and subdirectories are recursively processed.
+     *
+     *  This runs as a pipeline of three stages connected by a bounded
+     *  queue: a discovery thread walks the directories and hands out
+     *  docIDs, a pool of workers reads and tokenizes documents into
+     *  per-document postings, and the calling thread merges those into the
+     *  index in docID order.
      */
     public void processFiles( File f ) {
+        if(readIndex){
+            //The documents of an index read from disc are in its header
+            return;
+        }
+        final ExecutorService workers = Executors.newFixedThreadPool(numberOfWorkers);
+        final BlockingQueue<Future<DocumentPostings>> parsed =
+            new ArrayBlockingQueue<Future<DocumentPostings>>(numberOfWorkers*QUEUE_LENGTH_PER_WORKER);
+        final File root = f;
+        Thread discovery = new Thread("Indexer discovery") {
+            public void run() {
+                try {
+                    discoverFiles(root, workers, parsed);
+                }
+                catch ( InterruptedException e ) {
+                    // Indexing was abandoned
+                }
+                finally {
+                    try {
+                        parsed.put(END_OF_FILES);
+                    }
+                    catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        discovery.start();
+        try {
+            // The queue is in docID order, so postings are always appended
+            Future<DocumentPostings> next;
+            while ( (next = parsed.take()) != END_OF_FILES ) {
+                try {
+                    DocumentPostings document = next.get();
+                    if ( document != null ) {
+                        document.insertInto( index );
+                        index.getStatistics().setDocumentLength( document.docID, document.length() );
+                    }
+                }
+                catch ( ExecutionException e ) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        }
+        catch ( InterruptedException e ) {
+            discovery.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            workers.shutdownNow();
+        }
+    }
+
+
+    /**
+     *  Walks the file @code{f} (recursively, if it is a directory), registers
+     *  every readable file and submits it to the workers. The results are
+     *  queued in the order the files were found.
+     */
+    private void discoverFiles( File f, ExecutorService workers, BlockingQueue<Future<DocumentPostings>> parsed ) throws InterruptedException {
 	// do not try to index fs that cannot be read
 	if ( f.canRead() ) {
 	    if ( f.isDirectory() ) {
@@ -79,50 +178,69 @@ public class Indexer {
 		// an IO error could occur
 		if ( fs != null ) {
 		    for ( int i=0; i<fs.length; i++ ) {
-			processFiles( new File( f, fs[i] ));
+			discoverFiles( new File( f, fs[i] ), workers, parsed );
 		    }
-                    if(!readIndex)index.finalFlushAndCloseStreams();
-		};
+		}
 	    } else {
-		//System.err.println( "Indexing " + f.getPath() );
 		// First register the document and get a docID
-		int docID = generateDocID();
-		index.docIDs.put( "" + docID, f.getPath() );
-                if(readIndex) return; //return here. No reading required
-		try {
-		    // Read the first few bytes of the file to see if it is 
-		    // likely to be a PDF 
-		    Reader reader = new FileReader( f );
-		    char[] buf = new char[4];
-		    reader.read( buf, 0, 4 );
-		    if ( buf[0] == '%' && buf[1]=='P' && buf[2]=='D' && buf[3]=='F' ) {
-			// We assume this is a PDF file
-			try {
-			    String contents = extractPDFContents( f );
-			    reader = new StringReader( contents );
+		final int docID = generateDocID();
+		index.getDocuments().add( docID, f.getPath() );
+		final File file = f;
+		parsed.put( workers.submit( new Callable<DocumentPostings>() {
+			public DocumentPostings call() throws IOException {
+			    return tokenize( docID, file );
 			}
-			catch ( IOException e ) {
-			    // Perhaps it wasn't a PDF file after all
-			    reader = new FileReader( f );
-			}
-		    }
-		    else {
-			// We hope this is ordinary text
-			reader = new FileReader( f );
-		    }
-		    SimpleTokenizer tok = new SimpleTokenizer( reader );
-		    int offset = 0;
-		    while ( tok.hasMoreTokens() ) {
-			String token = tok.nextToken();
-			insertIntoIndex( docID, token, offset++ );
-		    }
-		    index.docLengths.put( "" + docID, offset );
-		    reader.close();
+		    }));
+	    }
+	}
+    }
+
+
+    /**
+     *  Reads and tokenizes one document. Runs on a worker thread.
+     *
+     *  The file is opened once. Unless it is a PDF file, its bytes are
+     *  tokenized as UTF-8 straight from a buffer: files of up to
+     *  MAP_THRESHOLD bytes are read into one, larger ones are mapped.
+     */
+    private DocumentPostings tokenize( int docID, File f ) throws IOException {
+	DocumentPostings document = new DocumentPostings( docID );
+	FileChannel channel = FileChannel.open( f.toPath(), StandardOpenOption.READ );
+	try {
+	    long size = channel.size();
+	    if ( size > Integer.MAX_VALUE ) {
+		// Too large for one buffer, so go through a decoder
+		Reader reader = new InputStreamReader( Channels.newInputStream( channel ), StandardCharsets.UTF_8 );
+		new SimpleTokenizer( reader ).tokenize( document );
+		return document;
+	    }
+	    ByteBuffer bytes;
+	    if ( size > MAP_THRESHOLD ) {
+		bytes = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+	    }
+	    else {
+		bytes = ByteBuffer.allocate( (int) size );
+		while ( bytes.hasRemaining() && channel.read( bytes ) >= 0 );
+		bytes.flip();
+	    }
+	    // Look at the first few bytes to see if it is likely to be a PDF
+	    if ( bytes.remaining() >= 4 && bytes.get( 0 ) == '%' && bytes.get( 1 ) == 'P'
+		 && bytes.get( 2 ) == 'D' && bytes.get( 3 ) == 'F' ) {
+		try {
+		    String contents = extractPDFContents( f );
+		    new SimpleTokenizer( new StringReader( contents )).tokenize( document );
+		    return document;
 		}
 		catch ( IOException e ) {
-		    e.printStackTrace();
+		    // Perhaps it wasn't a PDF file after all
 		}
 	    }
+	    // We hope this is ordinary text
+	    SimpleTokenizer.tokenize( bytes, document );
+	    return document;
+	}
+	finally {
+	    channel.close();
 	}
     }
 
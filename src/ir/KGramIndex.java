@@ -0,0 +1,149 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ *   Bigram index over a vocabulary, for expanding wildcard terms such as
+ *   @code{*bar} and @code{f*o}. Every term is padded with a @code{$} at
+ *   both ends and listed under each of its bigrams, so a pattern's
+ *   candidates are the terms listed under all the bigrams of its fixed
+ *   pieces. The candidates are then checked against the whole pattern,
+ *   since the bigrams do not fix their order.
+ *
+ *   Terms are numbered in sorted order and the lists hold those numbers,
+ *   so intersecting them is a merge of sorted int arrays.
+ */
+public class KGramIndex {
+
+    public static final char WILDCARD = '*';
+    private static final char BOUNDARY = '$';
+
+    private final String[] terms;
+    private final HashMap<String,int[]> bigrams = new HashMap<String,int[]>();
+
+
+    public KGramIndex( Iterator<String> vocabulary ) {
+        ArrayList<String> list = new ArrayList<String>();
+        while(vocabulary.hasNext()){
+            list.add(vocabulary.next());
+        }
+        terms = list.toArray(new String[list.size()]);
+        Arrays.sort(terms);
+        HashMap<String,int[]> building = new HashMap<String,int[]>();
+        for(int t = 0; t < terms.length; t++){
+            String padded = BOUNDARY + terms[t] + BOUNDARY;
+            for(int i = 0; i + 2 <= padded.length(); i++){
+                String bigram = padded.substring(i, i + 2);
+                int[] ids = building.get(bigram);
+                if(ids == null){
+                    //Slot 0 holds the number of ids
+                    ids = new int[4];
+                    building.put(bigram, ids);
+                }
+                //A term with a repeated bigram is listed once
+                if(ids[0] > 0 && ids[ids[0]] == t) continue;
+                if(ids[0] + 1 == ids.length){
+                    ids = Arrays.copyOf(ids, ids.length*2);
+                    building.put(bigram, ids);
+                }
+                ids[++ids[0]] = t;
+            }
+        }
+        for(Map.Entry<String,int[]> entry: building.entrySet()){
+            int[] ids = entry.getValue();
+            bigrams.put(entry.getKey(), Arrays.copyOfRange(ids, 1, ids[0] + 1));
+        }
+    }
+
+    /**  The number of terms indexed. */
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     *  Returns the terms matching pattern, in which @code{*} stands for
+     *  any sequence of characters, in sorted order.
+     */
+    public ArrayList<String> expand( String pattern ) {
+        String padded = BOUNDARY + pattern + BOUNDARY;
+        int[] candidates = null;
+        for(String piece: padded.split("\\" + WILDCARD)){
+            for(int i = 0; i + 2 <= piece.length(); i++){
+                int[] ids = bigrams.get(piece.substring(i, i + 2));
+                if(ids == null){
+                    return new ArrayList<String>();
+                }
+                candidates = (candidates == null) ? ids : intersect(candidates, ids);
+            }
+        }
+        ArrayList<String> matches = new ArrayList<String>();
+        if(candidates == null){
+            //No piece is long enough to narrow the terms down
+            for(String term: terms){
+                if(matches(pattern, term)) matches.add(term);
+            }
+        }
+        else{
+            for(int t: candidates){
+                if(matches(pattern, terms[t])) matches.add(terms[t]);
+            }
+        }
+        return matches;
+    }
+
+    private static int[] intersect( int[] a, int[] b ) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for(int i = 0, j = 0; i < a.length && j < b.length; ){
+            if(a[i] < b[j]) i++;
+            else if(a[i] > b[j]) j++;
+            else{
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     *  True if term matches pattern, in which @code{*} stands for any
+     *  sequence of characters.
+     */
+    public static boolean matches( String pattern, String term ) {
+        String[] pieces = pattern.split("\\" + WILDCARD, -1);
+        if(pieces.length == 1){
+            return pattern.equals(term);
+        }
+        String first = pieces[0];
+        String last = pieces[pieces.length - 1];
+        if(first.length() + last.length() > term.length()
+           || !term.startsWith(first) || !term.endsWith(last)){
+            return false;
+        }
+        int pos = first.length();
+        int end = term.length() - last.length();
+        for(int i = 1; i < pieces.length - 1; i++){
+            int found = term.indexOf(pieces[i], pos);
+            if(found < 0 || found + pieces[i].length() > end){
+                return false;
+            }
+            pos = found + pieces[i].length();
+        }
+        return true;
+    }
+
+    /**  True if term contains a wildcard. */
+    public static boolean isWildcard( String term ) {
+        return term.indexOf(WILDCARD) >= 0;
+    }
+}
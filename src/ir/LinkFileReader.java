@@ -0,0 +1,220 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ *   Reads a link file, in which every line is a document title, a
+ *   @code{;}, and the titles of the documents it links to, each followed
+ *   by a @code{,}.
+ *
+ *   The file is memory-mapped and parsed from its bytes. The titles are
+ *   numbered in the order they first appear by a TermLexicon, which keeps
+ *   their bytes (one char per byte) in its arena. readGraph() reads the
+ *   file twice: first to number the titles and count the links of every
+ *   document, then to put the links straight into their rows. So besides
+ *   the titles it only needs the int arrays of the graph itself, and
+ *   repeated links are dropped by sorting the rows (see LinkGraph).
+ */
+public class LinkFileReader {
+
+    /** The largest part of the file mapped at once. Parts end at line breaks. */
+    static final long MAX_MAPPING_SIZE = 1L << 30;
+
+    private static final int COUNT = 0;
+    private static final int FILL = 1;
+    private static final int EDGES = 2;
+
+    private final TermLexicon titles;
+
+    /** What a pass collects: links per document, the rows, or the links in order. */
+    private int[] counts;
+    private int[] next;
+    private int[] rows;
+    private Links links;
+
+    private char[] title = new char[64];
+    /** Where the last pass stopped reading. */
+    private long end = 0;
+
+
+    /**
+     *  Reads titles into titles. Titles already there keep their numbers.
+     */
+    public LinkFileReader( TermLexicon titles ) {
+        this.titles = titles;
+    }
+
+    /**  Where the last read stopped: the size of the file when it was read. */
+    public long end() {
+        return end;
+    }
+
+    /**
+     *  Reads the whole file into a graph whose node i is the document
+     *  titles numbers i.
+     */
+    public LinkGraph readGraph( File file ) throws IOException {
+        counts = new int[1024];
+        read(file, 0, COUNT);
+        int n = titles.size();
+        int[] start = new int[n + 1];
+        long numberOfLinks = 0;
+        for(int i = 0; i < n; i++){
+            start[i] = (int) numberOfLinks;
+            numberOfLinks += (i < counts.length) ? counts[i] : 0;
+            if(numberOfLinks > Integer.MAX_VALUE){
+                throw new IOException("Too many links in " + file);
+            }
+        }
+        start[n] = (int) numberOfLinks;
+        counts = null;
+        rows = new int[(int) numberOfLinks];
+        next = Arrays.copyOf(start, n);
+        read(file, 0, FILL);
+        next = null;
+        LinkGraph graph = LinkGraph.fromRows(n, start, rows);
+        rows = null;
+        return graph;
+    }
+
+    /**
+     *  Reads the links in the file from offset from on into links, in the
+     *  order they come, numbering new titles after the known ones.
+     */
+    public void readLinks( File file, long from, Links links ) throws IOException {
+        this.links = links;
+        read(file, from, EDGES);
+        this.links = null;
+    }
+
+    /**  The title numbered id. */
+    public static String title( TermLexicon titles, int id ) {
+        char[] chars = titles.chars();
+        int start = titles.start(id);
+        int length = titles.length(id);
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++){
+            bytes[i] = (byte) chars[start + i];
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void read( File file, long from, int pass ) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long pos = from;
+            while(pos < size){
+                long length = Math.min(size - pos, MAX_MAPPING_SIZE);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                int limit = (int) length;
+                if(pos + length < size){
+                    //End the part after its last complete line
+                    while(limit > 0 && buffer.get(limit - 1) != '\n'){
+                        limit--;
+                    }
+                    if(limit == 0){
+                        throw new IOException("Line too long in " + file);
+                    }
+                }
+                parse(buffer, limit, pass);
+                pos += limit;
+            }
+            end = size;
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**  Parses the lines in buffer[0..limit-1]. */
+    private void parse( ByteBuffer buffer, int limit, int pass ) {
+        int pos = 0;
+        while(pos < limit){
+            int semicolon = pos;
+            while(semicolon < limit && buffer.get(semicolon) != ';' && buffer.get(semicolon) != '\n'){
+                semicolon++;
+            }
+            if(semicolon == limit || buffer.get(semicolon) == '\n'){
+                //Not a line of links
+                pos = semicolon + 1;
+                continue;
+            }
+            int fromDoc = number(buffer, pos, semicolon, pass);
+            pos = semicolon + 1;
+            int start = pos;
+            while(true){
+                int b = (pos < limit) ? buffer.get(pos) : '\n';
+                if(b == ',' || b == '\n' || b == '\r'){
+                    if(pos > start){
+                        link(fromDoc, number(buffer, start, pos, pass), pass);
+                    }
+                    pos++;
+                    start = pos;
+                    if(b == '\n') break;
+                }
+                else{
+                    pos++;
+                }
+            }
+        }
+    }
+
+    /**  The number of the title in buffer[from..to-1], numbering it if it is new and the pass may. */
+    private int number( ByteBuffer buffer, int from, int to, int pass ) {
+        int length = to - from;
+        if(title.length < length){
+            title = new char[Math.max(length, 2*title.length)];
+        }
+        for(int i = 0; i < length; i++){
+            title[i] = (char) (buffer.get(from + i) & 0xFF);
+        }
+        return (pass == FILL) ? titles.find(title, 0, length) : titles.intern(title, 0, length);
+    }
+
+    private void link( int fromDoc, int toDoc, int pass ) {
+        switch(pass){
+            case COUNT:
+                if(fromDoc >= counts.length){
+                    counts = Arrays.copyOf(counts, Math.max(fromDoc + 1, 2*counts.length));
+                }
+                counts[fromDoc]++;
+                break;
+            case FILL:
+                rows[next[fromDoc]++] = toDoc;
+                break;
+            default:
+                links.add(fromDoc, toDoc);
+        }
+    }
+
+
+    /**
+     *  Links as parallel, growable arrays of sources and targets.
+     */
+    public static class Links {
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        int size = 0;
+
+        void add( int fromDoc, int toDoc ) {
+            if(size == from.length){
+                from = Arrays.copyOf(from, 2*size);
+                to = Arrays.copyOf(to, 2*size);
+            }
+            from[size] = fromDoc;
+            to[size++] = toDoc;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.util.Arrays;
+
+/**
+ *   A directed graph of links between numbered nodes, in compressed
+ *   sparse row form: the out-links of node i are outLinks[outStart[i]..
+ *   outStart[i+1]-1], sorted and without duplicates. The in-links are kept
+ *   the same way (the compressed sparse columns of the same matrix), so
+ *   PageRank can pull a node's score from its in-links in one pass over
+ *   the edges.
+ */
+public class LinkGraph {
+
+    private final int numberOfNodes;
+
+    private final int[] outStart;
+    private final int[] outLinks;
+
+    private final int[] inStart;
+    private final int[] inLinks;
+
+
+    private LinkGraph( int numberOfNodes, int[] outStart, int[] outLinks ) {
+        this.numberOfNodes = numberOfNodes;
+        this.outStart = outStart;
+        this.outLinks = outLinks;
+        //Count the in-links, then place them; sources come in increasing order, so every list is sorted
+        inStart = new int[numberOfNodes + 1];
+        for(int k = 0; k < outLinks.length; k++){
+            inStart[outLinks[k] + 1]++;
+        }
+        for(int j = 0; j < numberOfNodes; j++){
+            inStart[j + 1] += inStart[j];
+        }
+        inLinks = new int[outLinks.length];
+        int[] next = Arrays.copyOf(inStart, numberOfNodes);
+        for(int i = 0; i < numberOfNodes; i++){
+            for(int k = outStart[i]; k < outStart[i + 1]; k++){
+                inLinks[next[outLinks[k]]++] = i;
+            }
+        }
+    }
+
+    /**
+     *  Builds the graph of numberOfNodes nodes with the first numberOfEdges
+     *  edges from[k] -> to[k], which may come in any order and repeat.
+     */
+    public static LinkGraph fromEdges( int numberOfNodes, int[] from, int[] to, int numberOfEdges ) {
+        //Counting sort of the edges by source
+        int[] start = new int[numberOfNodes + 1];
+        for(int k = 0; k < numberOfEdges; k++){
+            start[from[k] + 1]++;
+        }
+        for(int i = 0; i < numberOfNodes; i++){
+            start[i + 1] += start[i];
+        }
+        int[] links = new int[numberOfEdges];
+        int[] next = Arrays.copyOf(start, numberOfNodes);
+        for(int k = 0; k < numberOfEdges; k++){
+            links[next[from[k]]++] = to[k];
+        }
+        return fromRows(numberOfNodes, start, links);
+    }
+
+    /**
+     *  Builds the graph from rows of out-links, which need not be sorted
+     *  and may repeat: the links of node i are links[start[i]..start[i+1]-1].
+     *  The arrays are reused.
+     */
+    static LinkGraph fromRows( int numberOfNodes, int[] start, int[] links ) {
+        //Sort every row and drop repeated links, moving the rows down over the gaps
+        int n = 0;
+        for(int i = 0; i < numberOfNodes; i++){
+            int from = start[i];
+            int to = start[i + 1];
+            start[i] = n;
+            Arrays.sort(links, from, to);
+            for(int k = from; k < to; k++){
+                if(n == start[i] || links[n - 1] != links[k]){
+                    links[n++] = links[k];
+                }
+            }
+        }
+        start[numberOfNodes] = n;
+        return new LinkGraph(numberOfNodes, start, n == links.length ? links : Arrays.copyOf(links, n));
+    }
+
+    public int numberOfNodes() {
+        return numberOfNodes;
+    }
+
+    public int numberOfEdges() {
+        return outLinks.length;
+    }
+
+    public int outDegree( int i ) {
+        return outStart[i + 1] - outStart[i];
+    }
+
+    public int inDegree( int j ) {
+        return inStart[j + 1] - inStart[j];
+    }
+
+    /**  The number of nodes without out-links. */
+    public int numberOfSinks() {
+        int sinks = 0;
+        for(int i = 0; i < numberOfNodes; i++){
+            if(outDegree(i) == 0) sinks++;
+        }
+        return sinks;
+    }
+
+    /**  The out-links of node i are outLinks()[outStart(i)..outStart(i+1)-1]. */
+    public int outStart( int i ) {
+        return outStart[i];
+    }
+
+    public int[] outLinks() {
+        return outLinks;
+    }
+
+    /**  The in-links of node j are inLinks()[inStart(j)..inStart(j+1)-1]. */
+    public int inStart( int j ) {
+        return inStart[j];
+    }
+
+    public int[] inLinks() {
+        return inLinks;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *   Approximates PageRank with random walks: walksPerNode walks start
+ *   from every node, and at every step a walk stops with probability
+ *   bored and otherwise follows a random outlink.
+ *
+ *   COMPLETE_PATH also stops a walk at a node without outlinks, and
+ *   estimates a node's score by the share of all visits that were to it.
+ *   CYCLIC_START lets a walk jump to a random node from a node without
+ *   outlinks, and estimates a node's score by the share of walks that end
+ *   in it.
+ *
+ *   The walks are kept (one after the other in one array), so links can
+ *   be added without starting over: a walk only changes from its first
+ *   visit to a node whose links changed, and only if the step it took
+ *   from there would now have gone elsewhere; that walk is continued from
+ *   the new step, and the counts are updated. The walks that jumped
+ *   before the nodes were added are not redone, so with CYCLIC_START the
+ *   new nodes get a little less than their share of jumps.
+ */
+public class MonteCarloPageRank {
+
+    public static final int COMPLETE_PATH = 0;
+    public static final int CYCLIC_START = 1;
+
+    private final double bored;
+    private final int walksPerNode;
+    private final int variant;
+    private final Random random;
+
+    private final LinkGraph graph;
+    private int numberOfNodes;
+    /** The links added to the graph, per node. */
+    private int[][] added = new int[0][];
+    private int[] numberAdded = new int[0];
+
+    /** The walks: walk w is walks[walkStart[w]..walkEnd[w]-1]; the walks from node i are i*walksPerNode onwards. */
+    private int[] walks = new int[1024];
+    private int walksSize = 0;
+    private int[] walkStart = new int[0];
+    private int[] walkEnd = new int[0];
+    private int numberOfWalks = 0;
+
+    /** Per node, the number of visits to it and of walks ending in it. */
+    private int[] visits = new int[0];
+    private int[] ends = new int[0];
+    private long totalVisits = 0;
+
+
+    public MonteCarloPageRank( LinkGraph graph, double bored, int walksPerNode, int variant, long seed ) {
+        this.graph = graph;
+        this.bored = bored;
+        this.walksPerNode = Math.max(1, walksPerNode);
+        this.variant = variant;
+        this.random = new Random(seed);
+        addNodes(graph.numberOfNodes());
+    }
+
+    public int numberOfNodes() {
+        return numberOfNodes;
+    }
+
+    /**  The estimated scores, which sum to 1. */
+    public double[] scores() {
+        double[] scores = new double[numberOfNodes];
+        for(int i = 0; i < numberOfNodes; i++){
+            if(variant == COMPLETE_PATH){
+                scores[i] = (totalVisits == 0) ? 0 : visits[i]/(double) totalVisits;
+            }
+            else{
+                scores[i] = ends[i]/(double) numberOfWalks;
+            }
+        }
+        return scores;
+    }
+
+    /**
+     *  Grows the graph to n nodes, if it is smaller, and walks from the
+     *  new nodes.
+     */
+    public void addNodes( int n ) {
+        if(n <= numberOfNodes) return;
+        int from = numberOfNodes;
+        numberOfNodes = n;
+        added = Arrays.copyOf(added, n);
+        numberAdded = Arrays.copyOf(numberAdded, n);
+        visits = Arrays.copyOf(visits, n);
+        ends = Arrays.copyOf(ends, n);
+        int walksNeeded = n*walksPerNode;
+        walkStart = Arrays.copyOf(walkStart, walksNeeded);
+        walkEnd = Arrays.copyOf(walkEnd, walksNeeded);
+        for(int i = from; i < n; i++){
+            for(int k = 0; k < walksPerNode; k++){
+                int w = numberOfWalks++;
+                walkStart[w] = walksSize;
+                walk(i);
+                walkEnd[w] = walksSize;
+                count(w, walkStart[w], 1);
+            }
+        }
+    }
+
+    /**
+     *  Adds the first n links from[k] -> to[k] (which must be nodes of
+     *  the graph, see addNodes()) and updates the walks. Links that are
+     *  already in the graph are ignored.
+     *
+     *  @return the number of walks that changed.
+     */
+    public int addLinks( int[] from, int[] to, int n ) {
+        //The degrees before the links, and how many links each node gets now
+        int[] oldDegree = new int[numberOfNodes];
+        int[] newLinks = new int[numberOfNodes];
+        for(int k = 0; k < n; k++){
+            int u = from[k];
+            if(hasLink(u, to[k])) continue;
+            if(newLinks[u] == 0){
+                oldDegree[u] = outDegree(u);
+            }
+            if(added[u] == null){
+                added[u] = new int[4];
+            }
+            else if(numberAdded[u] == added[u].length){
+                added[u] = Arrays.copyOf(added[u], 2*numberAdded[u]);
+            }
+            added[u][numberAdded[u]++] = to[k];
+            newLinks[u]++;
+        }
+        int changed = 0;
+        for(int w = 0; w < numberOfWalks; w++){
+            for(int p = walkStart[w]; p < walkEnd[w]; p++){
+                int u = walks[p];
+                if(newLinks[u] == 0) continue;
+                int next = -1;
+                if(p < walkEnd[w] - 1){
+                    //The walk went on from u; it now takes one of the new links with their share of u's links
+                    if(oldDegree[u] == 0 || random.nextInt(oldDegree[u] + newLinks[u]) < newLinks[u]){
+                        next = newLink(u, newLinks[u]);
+                    }
+                }
+                else if(variant == COMPLETE_PATH && oldDegree[u] == 0 && random.nextDouble() >= bored){
+                    //The walk stopped at u only because u had no links
+                    next = newLink(u, newLinks[u]);
+                }
+                if(next >= 0){
+                    reroute(w, p, next);
+                    changed++;
+                    break;
+                }
+            }
+        }
+        if(walksSize > 2*totalVisits + 1024){
+            compact();
+        }
+        return changed;
+    }
+
+    /**  One of the last count links added from u, at random. */
+    private int newLink( int u, int count ) {
+        return added[u][numberAdded[u] - count + random.nextInt(count)];
+    }
+
+    /**
+     *  Replaces walk w from the visit after position p by a walk on from
+     *  next. The new walk is appended, and the old one left as garbage.
+     */
+    private void reroute( int w, int p, int next ) {
+        count(w, p + 1, -1);
+        int length = p + 1 - walkStart[w];
+        ensureCapacity(walksSize + length);
+        System.arraycopy(walks, walkStart[w], walks, walksSize, length);
+        walkStart[w] = walksSize;
+        walksSize += length;
+        walk(next);
+        walkEnd[w] = walksSize;
+        count(w, walkStart[w] + length, 1);
+    }
+
+    /**
+     *  Adds sign to the visits of walk w from position from on, and to the
+     *  end of the walk.
+     */
+    private void count( int w, int from, int sign ) {
+        for(int p = from; p < walkEnd[w]; p++){
+            visits[walks[p]] += sign;
+            totalVisits += sign;
+        }
+        ends[walks[walkEnd[w] - 1]] += sign;
+    }
+
+    /**  Appends a walk from node start to walks. */
+    private void walk( int start ) {
+        int node = start;
+        while(true){
+            ensureCapacity(walksSize + 1);
+            walks[walksSize++] = node;
+            int degree = outDegree(node);
+            if(degree == 0 && variant == COMPLETE_PATH) break;
+            if(random.nextDouble() < bored) break;
+            node = (degree == 0) ? random.nextInt(numberOfNodes) : link(node, random.nextInt(degree));
+        }
+    }
+
+    private int outDegree( int u ) {
+        int degree = (u < graph.numberOfNodes()) ? graph.outDegree(u) : 0;
+        return degree + numberAdded[u];
+    }
+
+    /**  The kth link from u: first those of the graph, then those added. */
+    private int link( int u, int k ) {
+        int base = (u < graph.numberOfNodes()) ? graph.outDegree(u) : 0;
+        return (k < base) ? graph.outLinks()[graph.outStart(u) + k] : added[u][k - base];
+    }
+
+    private boolean hasLink( int u, int v ) {
+        if(u < graph.numberOfNodes()
+           && Arrays.binarySearch(graph.outLinks(), graph.outStart(u), graph.outStart(u + 1), v) >= 0){
+            return true;
+        }
+        for(int k = 0; k < numberAdded[u]; k++){
+            if(added[u][k] == v) return true;
+        }
+        return false;
+    }
+
+    private void ensureCapacity( int capacity ) {
+        if(walks.length < capacity){
+            walks = Arrays.copyOf(walks, Math.max(capacity, 2*walks.length));
+        }
+    }
+
+    /**  Moves the walks together, dropping the garbage left by reroute(). */
+    private void compact() {
+        int[] compacted = new int[Math.max(1024, (int) Math.min(Integer.MAX_VALUE, 2*totalVisits))];
+        int size = 0;
+        for(int w = 0; w < numberOfWalks; w++){
+            int length = walkEnd[w] - walkStart[w];
+            System.arraycopy(walks, walkStart[w], compacted, size, length);
+            walkStart[w] = size;
+            size += length;
+            walkEnd[w] = size;
+        }
+        walks = compacted;
+        walksSize = size;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.nio.ByteBuffer;
+
+/**
+ *   Patched frame of reference (PForDelta when the values are gaps): the
+ *   low b bits of every value are bit packed, and the few values that do
+ *   not fit in b bits are patched afterwards as exceptions.
+ *
+ *   A block is the bit width b (one byte), the VByte coded number of
+ *   exceptions, the n packed values (least significant bits first, padded
+ *   to a whole byte), then per exception the VByte coded gap to the index
+ *   of the previous one and the bits of its value above the low b.
+ *
+ *   b is chosen per block to make it as small as possible, so one large
+ *   gap does not widen all the others.
+ */
+public class PForCodec extends PostingsCodec {
+
+    public int id() {
+        return 2;
+    }
+
+    public String name() {
+        return "pfor";
+    }
+
+    public int maxEncodedSize( int n ) {
+        //At most four bytes of packed bits and two VByte numbers per value
+        return 1 + VByte.MAX_BYTES + n*(4 + 2*VByte.MAX_BYTES);
+    }
+
+    public int encode( int[] values, int n, byte[] out, int pos ) {
+        int b = bitWidth(values, n);
+        int exceptions = 0;
+        for(int i = 0; i < n; i++){
+            if(b < 32 && (values[i] >>> b) != 0) exceptions++;
+        }
+        out[pos++] = (byte) b;
+        pos = VByte.write(out, pos, exceptions);
+        long mask = (1L << b) - 1;
+        long bits = 0;
+        int numberOfBits = 0;
+        for(int i = 0; i < n; i++){
+            bits |= (values[i] & mask) << numberOfBits;
+            numberOfBits += b;
+            while(numberOfBits >= 8){
+                out[pos++] = (byte) bits;
+                bits >>>= 8;
+                numberOfBits -= 8;
+            }
+        }
+        if(numberOfBits > 0){
+            out[pos++] = (byte) bits;
+        }
+        if(exceptions > 0){
+            int last = 0;
+            for(int i = 0; i < n; i++){
+                if((values[i] >>> b) != 0){
+                    pos = VByte.write(out, pos, i - last);
+                    pos = VByte.write(out, pos, values[i] >>> b);
+                    last = i;
+                }
+            }
+        }
+        return pos;
+    }
+
+    /**
+     *  The bit width that makes the block smallest, reckoning one byte for
+     *  the index of each exception.
+     */
+    private static int bitWidth( int[] values, int n ) {
+        //How many values need exactly so many bits
+        int[] count = new int[33];
+        for(int i = 0; i < n; i++){
+            count[32 - Integer.numberOfLeadingZeros(values[i])]++;
+        }
+        int best = 32;
+        long bestSize = 4L*n;
+        for(int b = 0; b < 32; b++){
+            long size = ((long) n*b + 7)/8;
+            for(int length = b + 1; length <= 32 && size < bestSize; length++){
+                size += count[length]*(2L + (length - b - 1)/7);
+            }
+            if(size < bestSize){
+                best = b;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    public int decode( ByteBuffer in, int pos, int n, int[] values ) {
+        int b = in.get(pos++);
+        int exceptions = 0;
+        for(int shift = 0; ; shift += 7){
+            int x = in.get(pos++);
+            exceptions |= (x & 0x7F) << shift;
+            if(x >= 0) break;
+        }
+        long mask = (1L << b) - 1;
+        long bits = 0;
+        int numberOfBits = 0;
+        for(int i = 0; i < n; i++){
+            while(numberOfBits < b){
+                bits |= (long) (in.get(pos++) & 0xFF) << numberOfBits;
+                numberOfBits += 8;
+            }
+            values[i] = (int) (bits & mask);
+            bits >>>= b;
+            numberOfBits -= b;
+        }
+        for(int e = 0, i = 0; e < exceptions; e++){
+            int gap = 0;
+            for(int shift = 0; ; shift += 7){
+                int x = in.get(pos++);
+                gap |= (x & 0x7F) << shift;
+                if(x >= 0) break;
+            }
+            int high = 0;
+            for(int shift = 0; ; shift += 7){
+                int x = in.get(pos++);
+                high |= (x & 0x7F) << shift;
+                if(x >= 0) break;
+            }
+            i += gap;
+            values[i] |= high << b;
+        }
+        return pos;
+    }
+}
@@ -5,50 +5,70 @@
  *   First version:  Johan Boye, 2012
  */  
 
-import com.sun.javafx.css.CalculatedValue;
+package ir;
+
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.io.*;
 
 public class PageRank{
 
-    /**  
-     *   Maximal number of documents. We're assuming here that we
-     *   don't have more docs than we can keep in main memory.
+    /**
+     *   Mapping from document names to document numbers (see 
+     *   LinkFileReader).
      */
-    final static int MAX_NUMBER_OF_DOCS = 2000000;
+    TermLexicon docNumber = new TermLexicon();
 
     /**
-     *   Mapping from document names to document numbers.
+     *   Mapping from document numbers to document names
      */
-    Hashtable<String,Integer> docNumber = new Hashtable<String,Integer>();
+    String[] docName;
 
     /**
-     *   Mapping from document numbers to document names
+     *   The links between the documents, as compressed sparse rows and 
+     *   columns (see LinkGraph), so an iteration takes time in proportion
+     *   to the number of links rather than the square of the number of
+     *   documents.
      */
-    String[] docName = new String[MAX_NUMBER_OF_DOCS];
+    LinkGraph graph;
 
-    /**  
-     *   A memory-efficient representation of the transition matrix.
-     *   The outlinks are represented as a Hashtable, whose keys are 
-     *   the numbers of the documents linked from.<p>
-     *
-     *   The value corresponding to key i is a Hashtable whose keys are 
-     *   all the numbers of documents j that i links to.<p>
-     *
-     *   If there are no outlinks from i, then the value corresponding 
-     *   key i is null.
+    /**
+     *   The number of documents with no outlinks.
      */
-    Hashtable<Integer,Hashtable<Integer,Boolean>> link = new Hashtable<Integer,Hashtable<Integer,Boolean>>();
+    int numberOfSinks = 0;
 
     /**
-     *   The number of outlinks from each node.
+     *   The pagerank of each document, once computed.
      */
-    int[] out = new int[MAX_NUMBER_OF_DOCS];
+    double[] score;
 
     /**
-     *   The number of documents with no outlinks.
+     *   While computing: the scores of the next iteration, and the share
+     *   of each document's score that goes along each of its outlinks.
      */
-    int numberOfSinks = 0;
+    double[] newScore;
+    double[] share;
+
+    /**
+     *   How much of the link file has been read so far.
+     */
+    long bytesRead = 0;
+
+    /**
+     *   The random walks, if the scores are approximated with them.
+     */
+    MonteCarloPageRank monteCarlo;
+
+    /**
+     *   The number of threads computing the scores.
+     */
+    int numberOfThreads = 1;
+
+    /**
+     *   Ranges of fewer documents than this are not split between threads.
+     */
+    final static int GRAIN = 4096;
 
     /**
      *   The probability that the surfer will be bored, stop
@@ -57,8 +77,8 @@ public class PageRank{
     final static double BORED = 0.15;
 
     /**
-     *   Convergence criterion: Transition probabilities do not 
-     *   change more that EPSILON from one iteration to another.
+     *   Convergence criterion: the scores do not change more than EPSILON
+     *   (in Euclidean length) from one iteration to another.
      */
     final static double EPSILON = 0.0001;
 
@@ -73,8 +93,31 @@ public class PageRank{
 
 
     public PageRank( String filename ) {
+	this( filename, 1 );
+    }
+
+
+    public PageRank( String filename, int numberOfThreads ) {
+	this( filename, numberOfThreads, 0, MonteCarloPageRank.COMPLETE_PATH );
+    }
+
+
+    /**
+     *   Computes the pagerank of the documents in the link file, by power
+     *   iteration on numberOfThreads threads if walksPerNode is 0, and 
+     *   otherwise approximately, by walksPerNode random walks of the given
+     *   variant from each document.
+     */
+    public PageRank( String filename, int numberOfThreads, int walksPerNode, int variant ) {
+	this.numberOfThreads = Math.max( 1, numberOfThreads );
 	int noOfDocs = readDocs( filename );
-	computePagerank( noOfDocs );
+	if ( walksPerNode > 0 ) {
+	    computeMonteCarlo( walksPerNode, variant );
+	}
+	else {
+	    computePagerank( noOfDocs );
+	}
+	printTop( 50 );
     }
 
 
@@ -82,71 +125,30 @@ public class PageRank{
 
 
     /**
-     *   Reads the documents and creates the docs table. When this method 
-     *   finishes executing then the @code{out} vector of outlinks is 
-     *   initialised for each doc, and the @code{p} matrix is filled with
-     *   zeroes (that indicate direct links) and NO_LINK (if there is no
-     *   direct link. <p>
+     *   Reads the documents and builds the link graph. When this method 
+     *   finishes executing then @code{docName} holds the name of each doc
+     *   and @code{graph} its outlinks, without repeated links.<p>
      *
      *   @return the number of documents read.
      */
     int readDocs( String filename ) {
-	int fileIndex = 0;
+	System.err.print( "Reading file... " );
+	LinkFileReader reader = new LinkFileReader( docNumber );
 	try {
-	    System.err.print( "Reading file... " );
-	    BufferedReader in = new BufferedReader( new FileReader( filename ));
-	    String line;
-	    while ((line = in.readLine()) != null && fileIndex<MAX_NUMBER_OF_DOCS ) {
-		int index = line.indexOf( ";" );
-		String title = line.substring( 0, index );
-		Integer fromdoc = docNumber.get( title );
-		//  Have we seen this document before?
-		if ( fromdoc == null ) {	
-		    // This is a previously unseen doc, so add it to the table.
-		    fromdoc = fileIndex++;
-		    docNumber.put( title, fromdoc );
-		    docName[fromdoc] = title;
-		}
-		// Check all outlinks.
-		StringTokenizer tok = new StringTokenizer( line.substring(index+1), "," );
-		while ( tok.hasMoreTokens() && fileIndex<MAX_NUMBER_OF_DOCS ) {
-		    String otherTitle = tok.nextToken();
-		    Integer otherDoc = docNumber.get( otherTitle );
-		    if ( otherDoc == null ) {
-			// This is a previousy unseen doc, so add it to the table.
-			otherDoc = fileIndex++;
-			docNumber.put( otherTitle, otherDoc );
-			docName[otherDoc] = otherTitle;
-		    }
-		    // Set the probability to 0 for now, to indicate that there is
-		    // a link from fromdoc to otherDoc.
-		    if ( link.get(fromdoc) == null ) {
-			link.put(fromdoc, new Hashtable<Integer,Boolean>());
-		    }
-		    if ( link.get(fromdoc).get(otherDoc) == null ) {
-			link.get(fromdoc).put( otherDoc, true );
-			out[fromdoc]++;
-		    }
-		}
-	    }
-	    if ( fileIndex >= MAX_NUMBER_OF_DOCS ) {
-		System.err.print( "stopped reading since documents table is full. " );
-	    }
-	    else {
-		System.err.print( "done. " );
-	    }
-	    // Compute the number of sinks.
-	    for ( int i=0; i<fileIndex; i++ ) {
-		if ( out[i] == 0 )
-		    numberOfSinks++;
-	    }
-	}
-	catch ( FileNotFoundException e ) {
-	    System.err.println( "File " + filename + " not found!" );
+	    graph = reader.readGraph( new File( filename ));
+	    bytesRead = reader.end();
+	    System.err.print( "done. " );
 	}
 	catch ( IOException e ) {
-	    System.err.println( "Error reading file " + filename );
+	    System.err.println( "Error reading file " + filename + ": " + e.getMessage() );
+	    graph = LinkGraph.fromEdges( docNumber.size(), new int[0], new int[0], 0 );
+	}
+	int fileIndex = graph.numberOfNodes();
+	docName = new String[fileIndex];
+	for ( int i=0; i<fileIndex; i++ ) {
+	    docName[i] = LinkFileReader.title( docNumber, i );
 	}
+	numberOfSinks = graph.numberOfSinks();
 	System.err.println( "Read " + fileIndex + " number of documents" );
 	return fileIndex;
     }
@@ -155,72 +157,257 @@ public class PageRank{
     /* --------------------------------------------- */
 
 
+    /**
+     *   Approximates the pagerank of each document with random walks (see
+     *   MonteCarloPageRank), walksPerNode from each document.
+     */
+    void computeMonteCarlo( int walksPerNode, int variant ) {
+	long start = System.currentTimeMillis();
+	monteCarlo = new MonteCarloPageRank( graph, BORED, walksPerNode, variant, start );
+	score = monteCarlo.scores();
+	System.err.println( "Random walks took " + (System.currentTimeMillis() - start) + " ms" );
+    }
+
+
+    /**
+     *   Reads the links appended to the link file since it was last read
+     *   and updates the random walks and the scores for them, without
+     *   walking again from scratch. Only for scores from computeMonteCarlo().
+     *
+     *   @return the number of walks that changed.
+     */
+    int update( String filename ) throws IOException {
+	return update( filename, bytesRead );
+    }
+
+
+    /**
+     *   Like update( filename ), but reads the links of the file from 
+     *   offset from on. Links that are already in the graph are ignored,
+     *   so a grown copy of the link file, or a file of new links only, can
+     *   be read from 0.
+     */
+    int update( String filename, long from ) throws IOException {
+	if ( monteCarlo == null ) {
+	    throw new IllegalStateException( "Only Monte Carlo scores can be updated" );
+	}
+	LinkFileReader reader = new LinkFileReader( docNumber );
+	LinkFileReader.Links links = new LinkFileReader.Links();
+	reader.readLinks( new File( filename ), from, links );
+	bytesRead = reader.end();
+	int known = docName.length;
+	docName = Arrays.copyOf( docName, docNumber.size() );
+	for ( int i=known; i<docName.length; i++ ) {
+	    docName[i] = LinkFileReader.title( docNumber, i );
+	}
+	monteCarlo.addNodes( docName.length );
+	int changed = monteCarlo.addLinks( links.from, links.to, links.size );
+	score = monteCarlo.scores();
+	return changed;
+    }
+
+
+    /* --------------------------------------------- */
+
+
     /*
-     *   Computes the pagerank of each document.
+     *   Computes the pagerank of each document by power iteration over the
+     *   sparse link graph. Each document's new score is pulled from its 
+     *   inlinks: c times the score of each linking document divided by its
+     *   number of outlinks. What the sinks would spread over all documents
+     *   and the random jumps are the same for every document, so they are
+     *   added as one scalar.
+     *
+     *   Both passes of an iteration are split into ranges of documents on
+     *   a fork-join pool of numberOfThreads threads, and the sink score
+     *   and the difference are summed as the ranges are joined. Each 
+     *   document's score is only written by one range, so no locking is
+     *   needed, and the splitting does not depend on the number of threads,
+     *   so neither do the scores.
      */
     void computePagerank( int numberOfDocs ) {     
+        score = new double[numberOfDocs]; 
+        if(numberOfDocs == 0) return; 
+        newScore = new double[numberOfDocs]; 
+        share = new double[numberOfDocs]; 
+        double c = 1 - BORED;
+        //Starting from the uniform distribution
+        Arrays.fill(score, 1.0/numberOfDocs); 
         
-	//Power iteration with c = 0.85
-        //Setting initial vector to the first vector 
-        double[] score = new double[numberOfDocs]; 
-        score[0] = 1;
-        double[] newScore = new double[numberOfDocs]; 
-        double[] diffScore = new double[numberOfDocs]; 
-        double c = 0.85;
-        double difference = 1; 
-        score[0] = 1.0;    //Starting position
-        double jcElement = (1.0-c)*(1.0/numberOfDocs); 
+        ForkJoinPool pool = new ForkJoinPool(numberOfThreads); 
+        try {
+            for(int iteration = 0; iteration < MAX_NUMBER_OF_ITERATIONS; iteration++){
+                double sinkScore = pool.invoke(new Shares(graph, score, share, 0, numberOfDocs)); 
+                double jump = (c*sinkScore + (1 - c))/numberOfDocs; 
+                double difference = Math.sqrt(pool.invoke(new Pull(graph, share, score, newScore, 0, numberOfDocs, c, jump))); 
+                //Swap the vectors instead of copying
+                double[] old = score; 
+                score = newScore; 
+                newScore = old; 
+                System.err.println("Iteration " + (iteration+1) + ", difference: " + difference);
+                if(difference <= EPSILON) break; 
+            }
+        } finally {
+            pool.shutdown(); 
+        }
+        newScore = null; 
+        share = null; 
+    }
+    
+    /**
+     *   Sets the share of each outlink of the documents from (inclusive)
+     *   to to (exclusive), and returns the sum of the scores of the sinks
+     *   among them.
+     */
+    static class Shares extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L; 
+        final LinkGraph graph; 
+        final double[] score, share; 
+        final int from, to; 
         
-        //Initial difference
-        for(int i = 0; i < numberOfDocs; i++){
-            diffScore[i] = Math.abs(score[i] - newScore[i]);
+        Shares( LinkGraph graph, double[] score, double[] share, int from, int to ) {
+            this.graph = graph; 
+            this.score = score; 
+            this.share = share; 
+            this.from = from; 
+            this.to = to; 
         }
-        difference = computeMagnitude(diffScore); 
-
-        while(difference > 0.0001){
-            for(int i = 0; i < numberOfDocs; i++){
-                double newProb = 0; 
-                double Gij = 0; 
-                for(int j = 0; j < numberOfDocs; j++){
-                    if(score[j] != 0){  //Will make the term zero anyway
-                        if(link.get(j) != null){
-                            if(link.get(j).get(i) != null){
-                                Gij = (c*1.0/((double) link.get(j).size())) + jcElement;  //c*Pij + (1-c)Jij 
-                            }
-                            else Gij = jcElement; 
-                        }
-                        else{
-                            Gij = (c*1.0/((double)( numberOfDocs-1.0))) + jcElement; 
-                        }
-                        newProb += score[j]*Gij;
-                    }
-                }
-                
-                newScore[i] = newProb; 
-                if(i%1000 == 0) System.out.println("NewProb for " +  " " + i + ": " + newProb); 
+        
+        protected Double compute() {
+            if(to - from > GRAIN){
+                int middle = (from + to) >>> 1; 
+                Shares left = new Shares(graph, score, share, from, middle); 
+                left.fork(); 
+                double right = new Shares(graph, score, share, middle, to).compute(); 
+                return left.join() + right; 
             }
-            //Calculate the difference
-            for(int i = 0; i < numberOfDocs; i++){
-                diffScore[i] = Math.abs((score[i] - newScore[i])); 
+            double sinkScore = 0; 
+            for(int i = from; i < to; i++){
+                int outDegree = graph.outDegree(i); 
+                if(outDegree == 0){
+                    sinkScore += score[i]; 
+                    share[i] = 0; 
+                }
+                else share[i] = score[i]/outDegree; 
             }
-            difference = computeMagnitude(diffScore); 
-            System.out.println("Difference: " + difference);
-            
-            score = newScore.clone();   
-            
+            return sinkScore; 
+        }
+    }
+    
+    /**
+     *   Computes the new scores of the documents from (inclusive) to to
+     *   (exclusive), and returns the sum of the squares of their changes.
+     */
+    static class Pull extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L; 
+        final LinkGraph graph; 
+        final double[] share, score, newScore; 
+        final int from, to; 
+        final double c, jump; 
+        
+        Pull( LinkGraph graph, double[] share, double[] score, double[] newScore, int from, int to, double c, double jump ) {
+            this.graph = graph; 
+            this.share = share; 
+            this.score = score; 
+            this.newScore = newScore; 
+            this.from = from; 
+            this.to = to; 
+            this.c = c; 
+            this.jump = jump; 
         }
         
+        protected Double compute() {
+            if(to - from > GRAIN){
+                int middle = (from + to) >>> 1; 
+                Pull left = new Pull(graph, share, score, newScore, from, middle, c, jump); 
+                left.fork(); 
+                double right = new Pull(graph, share, score, newScore, middle, to, c, jump).compute(); 
+                return left.join() + right; 
+            }
+            int[] inLinks = graph.inLinks(); 
+            double difference = 0; 
+            for(int j = from; j < to; j++){
+                double sum = 0; 
+                for(int k = graph.inStart(j); k < graph.inStart(j+1); k++){
+                    sum += share[inLinks[k]]; 
+                }
+                newScore[j] = c*sum + jump; 
+                double d = newScore[j] - score[j]; 
+                difference += d*d; 
+            }
+            return difference; 
+        }
+    }
+
+
+    /**
+     *   The scores of the documents of an index, by docID. The titles file
+     *   has a line "number;title" for each document in the link file, and
+     *   a document of the index is the one whose file is named by the 
+     *   title (with or without an extension). Documents that are not in 
+     *   the link file score 0.
+     */
+    float[] scoresByDocument( String titlesFile, DocumentStore documents ) throws IOException {
+	HashMap<String,Integer> titleNumber = new HashMap<String,Integer>();
+	BufferedReader in = new BufferedReader( new InputStreamReader( new FileInputStream( titlesFile ), "UTF-8" ));
+	try {
+	    String line;
+	    while (( line = in.readLine() ) != null ) {
+		int index = line.indexOf( ";" );
+		if ( index < 0 ) continue;
+		int number = docNumber.find( line.substring( 0, index ));
+		if ( number >= 0 && number < score.length ) {
+		    titleNumber.put( line.substring( index+1 ), number );
+		}
+	    }
+	}
+	finally {
+	    in.close();
+	}
+	float[] scores = new float[documents.size()];
+	int found = 0;
+	for ( int docID=0; docID<scores.length; docID++ ) {
+	    String name = new File( documents.path( docID )).getName();
+	    Integer number = titleNumber.get( name );
+	    if ( number == null && name.lastIndexOf( '.' ) > 0 ) {
+		number = titleNumber.get( name.substring( 0, name.lastIndexOf( '.' )));
+	    }
+	    if ( number != null ) {
+		scores[docID] = (float) score[number];
+		found++;
+	    }
+	}
+	System.err.println( "Scored " + found + " of " + scores.length + " documents of the index" );
+	return scores;
+    }
+
+
+    /**
+     *   Writes the scores of the documents of the index on disc at 
+     *   indexPath (the directory, as HashedIndex names it) next to it (see
+     *   StaticScores), where HashedIndex reads them with the index.
+     */
+    void writeScores( String titlesFile, String indexPath ) throws IOException {
+	File directory = new File( indexPath );
+	DocumentStore documents = HashedIndex.readDocuments( directory );
+	StaticScores.write( new File( directory, StaticScores.FILE ).getPath(), scoresByDocument( titlesFile, documents ));
+    }
+
+
+    /**
+     *   Prints the n documents with the highest pagerank.
+     */
+    void printTop( int n ) {
         ArrayList<scoreObject> scoreObjects = new ArrayList<scoreObject>(); 
         for(int i = 0; i < score.length; i++){
             scoreObjects.add(i, new scoreObject(docName[i], score[i]));
         }
         
         Collections.sort(scoreObjects, Collections.reverseOrder());
-        int listSize = scoreObjects.size() >= 50 ? 50 : scoreObjects.size(); 
+        int listSize = scoreObjects.size() >= n ? n : scoreObjects.size(); 
         for(int i = 0; i < listSize; i++){
             System.out.println((i+1) + " : " + scoreObjects.get(i).name + " " + scoreObjects.get(i).score); 
         }
-        
     }
 
     
@@ -253,10 +440,12 @@ public class PageRank{
     }
     
     void prinkLinks(){
-        for(Integer key: link.keySet()){
-            System.out.print(key + "; ");
-            for(Integer value: link.get(key).keySet()){
-                System.out.print(" " + value + ", ");
+        int[] outLinks = graph.outLinks(); 
+        for(int i = 0; i < graph.numberOfNodes(); i++){
+            if(graph.outDegree(i) == 0) continue; 
+            System.out.print(docName[i] + "; ");
+            for(int k = graph.outStart(i); k < graph.outStart(i+1); k++){
+                System.out.print(" " + docName[outLinks[k]] + ", ");
             }
             System.out.println(); 
         }
@@ -265,23 +454,70 @@ public class PageRank{
     
     
     void printNumberOfLinks(int docID){
-        int numberOfLinks = 0; 
-        for(int i: link.keySet()){
-            if(link.get(i) != null){
-                if(link.get(i).get(docID) != null && link.get(i).get(docID) == true) numberOfLinks++; 
-            }
-        }
-        System.out.println("Number of links to " + docName[docID] + " is: " + numberOfLinks);
+        System.out.println("Number of links to " + docName[docID] + " is: " + graph.inDegree(docID));
     }
     /* --------------------------------------------- */
 
 
     public static void main( String[] args ) {
-	if ( args.length != 1 ) {
-	    System.err.println( "Please give the name of the link file" );
+	if ( args.length == 0 ) {
+	    System.err.println( "Please give the name of the link file, optionally followed by -t and the number of threads" );
+	    System.err.println( "or by -mc and the number of random walks per document, and -cyclic for the cyclic start variant," );
+	    System.err.println( "with -update and a file of more links to add them to the random walks afterwards," );
+	    System.err.println( "and by -o, the directory of an index and the titles file to write the scores for the index" );
+	    return;
 	}
-	else {
-	    new PageRank( args[0] );
+	int numberOfThreads = 1;
+	int walksPerNode = 0;
+	int variant = MonteCarloPageRank.COMPLETE_PATH;
+	String indexPath = null;
+	String titlesFile = null;
+	String updateFile = null;
+	for ( int i=1; i<args.length; i++ ) {
+	    if ( "-t".equals( args[i] ) && i+1 < args.length ) {
+		numberOfThreads = Integer.parseInt( args[++i] );
+	    }
+	    else if ( "-mc".equals( args[i] ) && i+1 < args.length ) {
+		walksPerNode = Integer.parseInt( args[++i] );
+	    }
+	    else if ( "-cyclic".equals( args[i] )) {
+		variant = MonteCarloPageRank.CYCLIC_START;
+	    }
+	    else if ( "-update".equals( args[i] ) && i+1 < args.length ) {
+		updateFile = args[++i];
+	    }
+	    else if ( "-o".equals( args[i] ) && i+2 < args.length ) {
+		indexPath = args[++i];
+		titlesFile = args[++i];
+	    }
+	    else {
+		System.err.println( "Unknown option: " + args[i] );
+		return;
+	    }
+	}
+	if ( updateFile != null && walksPerNode == 0 ) {
+	    System.err.println( "Only Monte Carlo scores can be updated, please give -mc as well" );
+	    return;
+	}
+	PageRank pageRank = new PageRank( args[0], numberOfThreads, walksPerNode, variant );
+	if ( updateFile != null ) {
+	    try {
+		long start = System.currentTimeMillis();
+		int changed = pageRank.update( updateFile, 0 );
+		System.err.println( "Updating changed " + changed + " walks in " + (System.currentTimeMillis() - start) + " ms" );
+		pageRank.printTop( 50 );
+	    }
+	    catch ( IOException e ) {
+		System.err.println( "Could not read the links: " + e.getMessage() );
+	    }
+	}
+	if ( indexPath != null ) {
+	    try {
+		pageRank.writeScores( titlesFile, indexPath );
+	    }
+	    catch ( IOException e ) {
+		System.err.println( "Could not write the scores: " + e.getMessage() );
+	    }
 	}
     }
 }
@@ -0,0 +1,73 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.nio.ByteBuffer;
+
+/**
+ *   Codes blocks of non-negative ints, such as the docID gaps, frequencies
+ *   and position gaps of a block of postings (see SegmentWriter).
+ *
+ *   A segment is written with one codec, whose id is kept in the header
+ *   of its dictionary, so the codec can be chosen per index and the
+ *   reader does not need to be told which one was used.
+ */
+public abstract class PostingsCodec {
+
+    public static final PostingsCodec VBYTE = new VByteCodec();
+    public static final PostingsCodec SIMPLE8B = new Simple8bCodec();
+    public static final PostingsCodec PFOR = new PForCodec();
+
+    /** The codec used unless another one is chosen. */
+    public static final PostingsCodec DEFAULT = PFOR;
+
+    private static final PostingsCodec[] CODECS = { VBYTE, SIMPLE8B, PFOR };
+
+
+    /**  The number stored in the segment to tell the codec. */
+    public abstract int id();
+
+    /**  The name the codec is chosen by. */
+    public abstract String name();
+
+    /**  The largest number of bytes encode() may use for n values. */
+    public abstract int maxEncodedSize( int n );
+
+    /**
+     *  Codes values[0..n-1] at out[pos]. The caller makes sure there is
+     *  room for maxEncodedSize(n) bytes.
+     *  @return the position after the written bytes.
+     */
+    public abstract int encode( int[] values, int n, byte[] out, int pos );
+
+    /**
+     *  Decodes n values coded by encode() starting at in[pos] into
+     *  values[0..n-1].
+     *  @return the position after the last decoded byte.
+     */
+    public abstract int decode( ByteBuffer in, int pos, int n, int[] values );
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    /**  Returns the codec with the given id, or null if there is none. */
+    public static PostingsCodec forId( int id ) {
+        for(PostingsCodec codec: CODECS){
+            if(codec.id() == id) return codec;
+        }
+        return null;
+    }
+
+    /**  Returns the codec with the given name, or null if there is none. */
+    public static PostingsCodec forName( String name ) {
+        for(PostingsCodec codec: CODECS){
+            if(codec.name().equalsIgnoreCase(name)) return codec;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+/**
+ *   Forward-only view over the postings of one term, in increasing
+ *   docID order. A fresh cursor is positioned before the first posting.
+ */
+public interface PostingsCursor {
+
+    /** Returned by nextDoc() once the postings are exhausted. */
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     *  Moves to the next posting.
+     *  @return the new docID, or NO_MORE_DOCS if there are no more postings.
+     */
+    public int nextDoc();
+
+    /**
+     *  Moves forward to the first posting whose docID is at least target.
+     *  Does not move if the current posting already qualifies.
+     *  @return the new docID, or NO_MORE_DOCS if there is no such posting.
+     */
+    public int advance( int target );
+
+    /**
+     *  The docID of the current posting, -1 before the first call to
+     *  nextDoc() and NO_MORE_DOCS once the postings are exhausted.
+     */
+    public int docID();
+
+    /**  The number of times the term occurs in the current document. */
+    public int frequency();
+
+    /**
+     *  The positions of the term in the current document, in increasing
+     *  order, in the first frequency() slots of the returned array. The
+     *  array is owned by the cursor and is overwritten on the next call.
+     */
+    public int[] positions();
+
+    /**  The number of documents in the postings (the document frequency). */
+    public int documentFrequency();
+
+    /**
+     *  An upper bound on the weight of the term (its frequency divided by
+     *  the document length) in any of the documents, used to skip documents
+     *  that cannot make it into the top of a ranked query.
+     */
+    public float maxWeight();
+
+}
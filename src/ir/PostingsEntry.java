@@ -1,70 +1,121 @@
-/*  
+/*
  *   This file is part of the computer assignment for the
  *   Information Retrieval course at KTH.
- * 
+ *
  *   First version:  Johan Boye, 2010
  *   Second version: Johan Boye, 2012
- */  
+ */
 
 package ir;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Arrays;
 
 public class PostingsEntry implements Comparable<PostingsEntry>, Serializable {
-    public static final long serialVersionUID = 1l;
-    
+    public static final long serialVersionUID = 2l;
+
+    private static final byte[] NO_POSITIONS = new byte[0];
+
     public int docID;
     public double score;
-    HashSet<Integer> positionsInDoc; 
+
+    /** The positions in increasing order, delta and variable-byte coded (see VByte). */
+    private byte[] positionsInDoc = NO_POSITIONS;
+    private int positionsLength = 0;
+    private int termFrequency = 0;
+    private int lastPosition = -1;
 
     public PostingsEntry(int docID, double score){
-        
-        this.docID = docID; 
-        this.score = score; 
-        this.positionsInDoc = new HashSet<>();
+
+        this.docID = docID;
+        this.score = score;
+    }
+
+    /**
+     * Creates an entry whose positions are the termFrequency coded
+     * positions in block[from..to).
+     */
+    PostingsEntry(int docID, double score, byte[] block, int from, int to, int termFrequency){
+        this(docID, score);
+        this.positionsInDoc = Arrays.copyOfRange(block, from, to);
+        this.positionsLength = to - from;
+        this.termFrequency = termFrequency;
+        if(termFrequency > 0){
+            int[] offsets = getOffsets();
+            lastPosition = offsets[termFrequency-1];
+        }
     }
-    
+
     /**
-     *  PostingsEntries are compared by their score (only relevant 
+     *  PostingsEntries are compared by their score (only relevant
      *  in ranked retrieval).
      *
-     *  The comparison is defined so that entries will be put in 
+     *  The comparison is defined so that entries will be put in
      *  descending order.
      */
     public int compareTo( PostingsEntry other ) {
 	return Double.compare( other.score, score );
     }
-    
+
     /**
-     * Adds a position to the positions set
-     * @param position 
+     * Adds a position to the positions. Positions normally arrive in
+     * increasing order and are just appended; anything else makes the
+     * block be re-coded.
+     * @param position
      */
     public void addOffset(int position){
-        positionsInDoc.add(position); 
+        if(position > lastPosition){
+            append(termFrequency == 0 ? position : position - lastPosition);
+            lastPosition = position;
+            termFrequency++;
+        }
+        else if(!isAtPosition(position)){
+            int[] offsets = Arrays.copyOf(getOffsets(), termFrequency+1);
+            offsets[termFrequency] = position;
+            Arrays.sort(offsets);
+            positionsLength = 0;
+            termFrequency = 0;
+            lastPosition = -1;
+            for(int offset: offsets){
+                addOffset(offset);
+            }
+        }
+    }
+
+    private void append(int gap){
+        if(positionsLength + VByte.MAX_BYTES > positionsInDoc.length){
+            positionsInDoc = Arrays.copyOf(positionsInDoc, Math.max(8, positionsInDoc.length*2));
+        }
+        positionsLength = VByte.write(positionsInDoc, positionsLength, gap);
     }
-    
+
     /**
      * Returns true if term is at given position
      * @param position
-     * @return 
+     * @return
      */
     public boolean isAtPosition(int position){
-        return positionsInDoc.contains(position); 
+        if(position > lastPosition) return false;
+        return Arrays.binarySearch(getOffsets(), position) >= 0;
     }
-    
-    public HashSet<Integer> getOffsets(){
-        return positionsInDoc; 
+
+    /**
+     * Returns the positions in increasing order
+     */
+    public int[] getOffsets(){
+        int[] offsets = new int[termFrequency];
+        VByte.readDeltas(positionsInDoc, 0, termFrequency, offsets);
+        return offsets;
     }
-    
+
     /**
      * Returns the number of times term t occurs
      * in this document
      */
     public int getTermFrequency(){
-        return positionsInDoc.size(); 
+        return termFrequency;
     }
-    
+
 }
 
-    
+
@@ -1,59 +1,321 @@
-/*  
+/*
  *   This file is part of the computer assignment for the
  *   Information Retrieval course at KTH.
- * 
+ *
  *   First version:  Johan Boye, 2010
  *   Second version: Johan Boye, 2012
- */  
+ */
 
 package ir;
 
-import java.util.LinkedList;
 import java.io.Serializable;
-import java.util.Iterator;
+import java.util.Arrays;
 
 /**
  *   A list of postings for a given word.
+ *
+ *   The postings are kept in growable parallel arrays: docIDs, term
+ *   frequencies and the start of each posting's positions in one shared
+ *   block of coded positions. Scores are only allocated for result lists.
  */
 public class PostingsList implements Serializable {
-    public static final long serialVersionUID = 1L;
-    
-    /** The postings list as a linked list. */
-    private LinkedList<PostingsEntry> list = new LinkedList<PostingsEntry>();
+    public static final long serialVersionUID = 2L;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**  Number of postings in this list  */
+    private int size = 0;
+
+    private int[] docIDs = new int[INITIAL_CAPACITY];
+    private int[] frequencies = new int[INITIAL_CAPACITY];
+    private int[] positionsStart = new int[INITIAL_CAPACITY];
+
+    /**
+     *  The positions of all postings, one posting after the other. Each
+     *  posting's positions are delta and variable-byte coded (see VByte).
+     */
+    private byte[] positions = new byte[INITIAL_CAPACITY*VByte.MAX_BYTES];
+    private int positionsSize = 0;
+
+    /** The last position added to the last posting. */
+    private int lastPosition = -1;
+
+    /** Scores, only allocated once a score has been set. */
+    private double[] scores;
+
+    /**
+     *  The largest weight of the term in any of the documents, see
+     *  PostingsCursor.maxWeight().
+     */
+    private float maxWeight = 0;
+
+    /** The number of matching documents, if this list only holds the best of them. */
+    private int numberOfMatches = -1;
 
 
     /**  Number of postings in this list  */
     public int size() {
-	return list.size();
+	return size;
     }
-    
+
     /**
-     * Returns iterator for postingslist
-     * @return 
+     *  The number of documents that matched the query this list answers,
+     *  which is more than size() if only the top ranked ones were kept.
      */
-    public Iterator getIterator(){
-        return list.listIterator();
+    public int numberOfMatches() {
+        return numberOfMatches < 0 ? size : numberOfMatches;
     }
 
-    /**  Returns the ith posting */
+    public void setNumberOfMatches( int n ) {
+        numberOfMatches = n;
+    }
+
+    /**  Returns the ith posting, as a freshly created entry. */
     public PostingsEntry get( int i ) {
-	return list.get( i );
+        int end = positionsEnd(i);
+	return new PostingsEntry(docIDs[i], score(i), positions, positionsStart[i], end, frequencies[i]);
     }
-    
+
+    /**  The end of the coded positions of the ith posting. */
+    private int positionsEnd( int i ) {
+        int end = positionsStart[i];
+        for(int k = 0; k < frequencies[i]; k++){
+            while(positions[end++] < 0);
+        }
+        return end;
+    }
+
+    /**  Returns the docID of the ith posting. */
+    public int docID( int i ) {
+        return docIDs[i];
+    }
+
+    /**  Returns the term frequency of the ith posting. */
+    public int frequency( int i ) {
+        return frequencies[i];
+    }
+
+    /**  Returns the score of the ith posting. */
+    public double score( int i ) {
+        return scores == null ? 0 : scores[i];
+    }
+
+    public void setScore( int i, double score ) {
+        if(scores == null){
+            scores = new double[docIDs.length];
+        }
+        scores[i] = score;
+    }
+
     /**
-     * Adds a posting as docID to the list 
+     *  Roughly the number of bytes this list takes on the heap, counting
+     *  the full capacity of its arrays.
+     */
+    public long memoryUsage() {
+        long bytes = 64 + 3*(16 + 4L*docIDs.length) + 16 + positions.length;
+        if(scores != null){
+            bytes += 16 + 8L*scores.length;
+        }
+        return bytes;
+    }
+
+    public float maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     *  Records that the term occurs freq times in a document of length
+     *  tokens. A length of 0 means the length is not known, and the
+     *  largest possible weight is assumed: 1, plus a little for the
+     *  rounding of the norm.
+     */
+    public void updateMaxWeight( int freq, int length ) {
+        float weight = Math.nextUp(1f);
+        if(length > 0){
+            //The weight as HashedIndex computes it
+            double exact = freq * (double) CollectionStatistics.norm(length);
+            weight = (float) exact;
+            //Round up: the bound must hold for the weights computed in double
+            if(weight < exact){
+                weight = Math.nextUp(weight);
+            }
+        }
+        maxWeight = Math.max(maxWeight, weight);
+    }
+
+    /**  Returns the docID of the last posting, or -1 if the list is empty. */
+    public int lastDocID() {
+        return size == 0 ? -1 : docIDs[size-1];
+    }
+
+    /**
+     * Adds a posting as docID to the list
      **/
     public void add(PostingsEntry p){
         //Only add if not already in list
-        if(list.size() == 0 || list.getLast().docID != p.docID) {
-            list.add(p); 
-        } 
+        if(size == 0 || docIDs[size-1] != p.docID) {
+            addPosting(p.docID, p.score);
+            for(int offset: p.getOffsets()){
+                appendPosition(offset);
+            }
+        }
     }
-    
-    public LinkedList<PostingsEntry> getList(){
-        return list; 
+
+    /**
+     *  Appends a posting without positions. The docID must be larger than
+     *  the docID of the last posting.
+     */
+    public void addPosting( int docID, double score ) {
+        append(docID, score);
+    }
+
+    /**
+     *  Appends a scored document to a ranked result list (see TopScores).
+     *  Such a list is in score order, not docID order, so it must not be
+     *  read with a cursor or intersected with other lists.
+     */
+    public void addResult( int docID, double score ) {
+        append(docID, score);
+    }
+
+    private void append( int docID, double score ) {
+        if(size == docIDs.length){
+            grow();
+        }
+        docIDs[size] = docID;
+        frequencies[size] = 0;
+        positionsStart[size] = positionsSize;
+        lastPosition = -1;
+        if(score != 0 || scores != null){
+            setScore(size, score);
+        }
+        size++;
+    }
+
+    /**
+     *  Records that the term occurs at offset in document docID. Starts a
+     *  new posting unless docID is the docID of the last posting. Within a
+     *  document offsets must be added in increasing order.
+     */
+    public void addPosition( int docID, int offset ) {
+        if(size == 0 || docIDs[size-1] != docID){
+            addPosting(docID, 0);
+        }
+        appendPosition(offset);
+    }
+
+    private void appendPosition( int offset ) {
+        if(offset <= lastPosition){
+            if(offset == lastPosition) return;
+            throw new IllegalArgumentException("Position " + offset + " added after " + lastPosition);
+        }
+        if(positionsSize + VByte.MAX_BYTES > positions.length){
+            positions = Arrays.copyOf(positions, positions.length*2);
+        }
+        int gap = (lastPosition < 0) ? offset : offset - lastPosition;
+        positionsSize = VByte.write(positions, positionsSize, gap);
+        lastPosition = offset;
+        frequencies[size-1]++;
+    }
+
+    private void grow() {
+        int capacity = docIDs.length*2;
+        docIDs = Arrays.copyOf(docIDs, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        positionsStart = Arrays.copyOf(positionsStart, capacity);
+        if(scores != null){
+            scores = Arrays.copyOf(scores, capacity);
+        }
     }
-}
-	
 
-			   
+    /**
+     *  Reads the remaining postings of the cursor into a new list.
+     */
+    public static PostingsList copyOf( PostingsCursor cursor ) {
+        PostingsList list = new PostingsList();
+        list.maxWeight = cursor.maxWeight();
+        while(cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS){
+            int freq = cursor.frequency();
+            int[] positions = cursor.positions();
+            list.addPosting(cursor.docID(), 0);
+            for(int k = 0; k < freq; k++){
+                list.appendPosition(positions[k]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     *  Returns a cursor over the postings. The cursor reads the arrays of
+     *  this list directly, so the list must not be modified while in use.
+     */
+    public PostingsCursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     *  Cursor over the arrays. advance() gallops: it probes 1, 2, 4, ...
+     *  postings ahead until it passes the target and then binary searches
+     *  the last step, so a jump over d postings costs O(log d).
+     */
+    private class Cursor implements PostingsCursor {
+        private int i = -1;
+        private int[] buffer = new int[INITIAL_CAPACITY];
+
+        public int nextDoc() {
+            if(++i >= size){
+                i = size;
+                return NO_MORE_DOCS;
+            }
+            return docIDs[i];
+        }
+
+        public int advance( int target ) {
+            if(i < 0) i = 0;
+            if(i >= size || docIDs[i] >= target){
+                return docID();
+            }
+            //docIDs[low] < target throughout
+            int low = i;
+            int step = 1;
+            while(low + step < size && docIDs[low + step] < target){
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, size);
+            while(high - low > 1){
+                int mid = (low + high) >>> 1;
+                if(docIDs[mid] < target) low = mid;
+                else high = mid;
+            }
+            i = high;
+            return docID();
+        }
+
+        public int docID() {
+            if(i < 0) return -1;
+            return i >= size ? NO_MORE_DOCS : docIDs[i];
+        }
+
+        public int frequency() {
+            return frequencies[i];
+        }
+
+        public int[] positions() {
+            int freq = frequencies[i];
+            if(buffer.length < freq){
+                buffer = new int[Math.max(freq, buffer.length*2)];
+            }
+            VByte.readDeltas(positions, positionsStart[i], freq, buffer);
+            return buffer;
+        }
+
+        public int documentFrequency() {
+            return size;
+        }
+
+        public float maxWeight() {
+            return maxWeight;
+        }
+    }
+}
@@ -50,6 +50,9 @@ public class SearchGUI extends JFrame {
 		
     /**  The word structure type (either unigram, bigram, or subphrase). */
     int structureType = Index.UNIGRAM;
+
+    /**  The number of documents returned by a ranked query. */
+    int maxResults = 100;
 		
     /**  Lock to prevent simultaneous access to the index. */
     Object indexLock = new Object();
@@ -172,20 +175,20 @@ public class SearchGUI extends JFrame {
 	Action search = new AbstractAction() {
 		public void actionPerformed( ActionEvent e ) {
 		    // Normalize the search string and turn it into a Query
-		    String queryString = SimpleTokenizer.normalize( queryWindow.getText() );
+		    String queryString = SimpleTokenizer.normalizeQuery( queryWindow.getText() );
 		    query = new Query( queryString );
 		    // Search and print results. Access to the index is synchronized since
 		    // we don't want to search at the same time we're indexing new files
 		    // (this might corrupt the index).
 		    synchronized ( indexLock ) {
-			results = indexer.index.search( query, queryType, rankingType, structureType ); 
+			results = indexer.index.search( query, queryType, rankingType, structureType, maxResults ); 
 		    }
 		    StringBuffer buf = new StringBuffer();
 		    if ( results != null ) {
-			buf.append( "\nFound " + results.size() + " matching document(s)\n\n" );
+			buf.append( "\nFound " + results.numberOfMatches() + " matching document(s)\n\n" );
 			for ( int i=0; i<results.size(); i++ ) {
 			    buf.append( " " + i + ". " );
-			    String filename = indexer.index.docIDs.get( "" + results.get(i).docID );
+			    String filename = indexer.index.getDocuments().path( results.get(i).docID );
 			    if ( filename == null ) {
 				buf.append( "" + results.get(i).docID );
 			    }
@@ -227,13 +230,13 @@ public class SearchGUI extends JFrame {
 			// synchronized since we don't want to search at the same time we're indexing new files
 			// (this might corrupt the index).
 			synchronized ( indexLock ) {
-			    results = indexer.index.search( query, queryType, rankingType, structureType );
+			    results = indexer.index.search( query, queryType, rankingType, structureType, maxResults );
 			}
 			buf.append( "\nSearch after relevance feedback:\n" );
-			buf.append( "\nFound " + results.size() + " matching document(s)\n\n" );
+			buf.append( "\nFound " + results.numberOfMatches() + " matching document(s)\n\n" );
 			for ( int i=0; i<results.size(); i++ ) {
 			    buf.append( " " + i + ". " );
-			    String filename = indexer.index.docIDs.get( "" + results.get(i).docID );
+			    String filename = indexer.index.getDocuments().path( results.get(i).docID );
 			    if ( filename == null ) {
 				buf.append( "" + results.get(i).docID );
 			    }
@@ -351,6 +354,7 @@ public class SearchGUI extends JFrame {
 		File dokDir = new File( dirNames.get( i ));
 		indexer.processFiles( dokDir );
 	    }
+	    indexer.index.finalFlushAndCloseStreams();
 	    resultWindow.setText( "\n  Done!" );
 	}
     };
@@ -370,6 +374,10 @@ public class SearchGUI extends JFrame {
         boolean writeToDisc = false; 
         String readIndexPath = null; 
         boolean readIndex = false; 
+        long memoryBudget = HashedIndex.DEFAULT_MEMORY_BUDGET; 
+        int numberOfWorkers = Runtime.getRuntime().availableProcessors(); 
+        PostingsCodec codec = PostingsCodec.DEFAULT; 
+        String staticScoresPath = null; 
         
 	while ( i < args.length ) {
 	    if ( "-d".equals( args[i] )) {
@@ -387,7 +395,31 @@ public class SearchGUI extends JFrame {
                 readIndex = true; 
                 i++;
                 readIndexPath = args[i++]; 
-                dirNames.add("data\\" + readIndexPath);
+            }
+            else if(args[i].equals("-m")){
+                i++;
+                memoryBudget = Long.parseLong(args[i++]) << 20; 
+            }
+            else if(args[i].equals("-t")){
+                i++;
+                numberOfWorkers = Integer.parseInt(args[i++]); 
+            }
+            else if(args[i].equals("-k")){
+                i++;
+                maxResults = Integer.parseInt(args[i++]); 
+            }
+            else if(args[i].equals("-c")){
+                i++;
+                codec = PostingsCodec.forName(args[i]); 
+                if(codec == null){
+                    System.err.println( "Unknown codec: " + args[i] + ", using " + PostingsCodec.DEFAULT );
+                    codec = PostingsCodec.DEFAULT; 
+                }
+                i++;
+            }
+            else if(args[i].equals("-p")){
+                i++;
+                staticScoresPath = args[i++]; 
             }
 	    else {
 		System.err.println( "Unknown option: " + args[i] );
@@ -395,6 +427,12 @@ public class SearchGUI extends JFrame {
 	    }
 	}
         indexer = new Indexer(indexPath, writeToDisc, readIndexPath, readIndex); 
+        indexer.index.setMemoryBudget(memoryBudget); 
+        indexer.index.setPostingsCodec(codec); 
+        indexer.setNumberOfWorkers(numberOfWorkers); 
+        if(staticScoresPath != null){
+            indexer.index.setStaticScores(StaticScores.map(staticScoresPath)); 
+        }
     }				    
 
 
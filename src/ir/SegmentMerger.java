@@ -0,0 +1,232 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ *   Merges runs (segments flushed while indexing, each holding the
+ *   postings of a consecutive range of documents) into one segment.
+ *
+ *   The runs' dictionaries are sorted, so this is a k-way merge driven by
+ *   a priority queue on the runs' current terms. Each run is read
+ *   sequentially: its dictionary through a buffered stream and its
+ *   postings through a mapped window, so memory use does not depend on
+ *   the size of the runs.
+ */
+public class SegmentMerger {
+
+    /**
+     *  Merges the runs into a new segment at path. The runs must be given
+     *  in docID order; they are deleted afterwards. The postings of the new
+     *  segment are coded with codec, whatever the runs were coded with.
+     */
+    public static void merge( List<String> runPaths, String path, PostingsCodec codec ) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<Run>();
+        for(int i = 0; i < runPaths.size(); i++){
+            Run run = new Run(runPaths.get(i), i);
+            if(run.next()){
+                queue.add(run);
+            }
+            else{
+                run.close();
+            }
+        }
+        SegmentWriter writer = new SegmentWriter(path, codec);
+        ArrayList<Run> sameTerm = new ArrayList<Run>();
+        while(!queue.isEmpty()){
+            String term = queue.peek().term;
+            while(!queue.isEmpty() && queue.peek().term.equals(term)){
+                sameTerm.add(queue.poll());
+            }
+            //Runs with equal terms come out in run order, which is docID order
+            PostingsCursor[] cursors = new PostingsCursor[sameTerm.size()];
+            for(int i = 0; i < cursors.length; i++){
+                cursors[i] = sameTerm.get(i).cursor();
+            }
+            writer.add(term, cursors.length == 1 ? cursors[0] : new ChainedCursor(cursors));
+            for(Run run: sameTerm){
+                if(run.next()){
+                    queue.add(run);
+                }
+                else{
+                    run.close();
+                }
+            }
+            sameTerm.clear();
+        }
+        writer.close();
+        for(String runPath: runPaths){
+            new File(runPath + SegmentWriter.DICTIONARY_FILE).delete();
+            new File(runPath + SegmentWriter.POSTINGS_FILE).delete();
+        }
+    }
+
+
+    /**
+     *  Sequential reader of one run.
+     */
+    private static class Run implements Comparable<Run> {
+        private final int number;
+        private final DataInputStream dictionary;
+        private final FileChannel postings;
+        private final PostingsCodec codec;
+        private int termsLeft;
+
+        String term;
+        private byte[] termBytes = new byte[64];
+        private long offset = 0;
+        private int length = 0;
+        private float maxWeight;
+
+        /** The mapped part of the postings file. */
+        private ByteBuffer window;
+        private long windowStart = 0;
+
+        Run( String path, int number ) throws IOException {
+            this.number = number;
+            FileChannel channel = FileChannel.open(new File(path + SegmentWriter.DICTIONARY_FILE).toPath(), StandardOpenOption.READ);
+            dictionary = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            termsLeft = dictionary.readInt();
+            //Where the block index starts; it is not needed to read the terms in order
+            dictionary.readLong();
+            codec = PostingsCodec.forId(dictionary.readInt());
+            if(codec == null){
+                throw new IOException("Unknown postings codec in run " + path);
+            }
+            postings = FileChannel.open(new File(path + SegmentWriter.POSTINGS_FILE).toPath(), StandardOpenOption.READ);
+        }
+
+        /**  Moves to the next term, or returns false if there is none. */
+        boolean next() throws IOException {
+            if(termsLeft == 0){
+                return false;
+            }
+            termsLeft--;
+            int shared = readVInt();
+            int rest = readVInt();
+            if(shared + rest > termBytes.length){
+                termBytes = Arrays.copyOf(termBytes, Math.max(shared + rest, termBytes.length*2));
+            }
+            dictionary.readFully(termBytes, shared, rest);
+            term = new String(termBytes, 0, shared + rest, StandardCharsets.UTF_8);
+            //The postings of the terms lie one after the other
+            offset += length;
+            length = readVInt();
+            readVInt();
+            maxWeight = dictionary.readFloat();
+            return true;
+        }
+
+        private int readVInt() throws IOException {
+            int value = 0;
+            for(int shift = 0; ; shift += 7){
+                int b = dictionary.readByte();
+                value |= (b & 0x7F) << shift;
+                if(b >= 0) return value;
+            }
+        }
+
+        /**  A cursor over the postings of the current term. */
+        PostingsCursor cursor() throws IOException {
+            if(window == null || offset + length > windowStart + window.capacity()){
+                windowStart = offset;
+                long size = Math.min(postings.size() - offset, Math.max(length, SegmentReader.MAX_MAPPING_SIZE));
+                window = postings.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+            }
+            return new SegmentReader.MappedCursor(window, (int) (offset - windowStart), maxWeight, codec);
+        }
+
+        void close() throws IOException {
+            dictionary.close();
+            postings.close();
+            window = null;
+        }
+
+        public int compareTo( Run other ) {
+            int c = term.compareTo(other.term);
+            return c != 0 ? c : Integer.compare(number, other.number);
+        }
+    }
+
+
+    /**
+     *  The postings of several cursors one after the other. The cursors
+     *  must cover increasing, disjoint docID ranges.
+     */
+    private static class ChainedCursor implements PostingsCursor {
+        private final PostingsCursor[] cursors;
+        private int current = 0;
+        private final int documentFrequency;
+        private final float maxWeight;
+
+        ChainedCursor( PostingsCursor[] cursors ) {
+            this.cursors = cursors;
+            int df = 0;
+            float weight = 0;
+            for(PostingsCursor cursor: cursors){
+                df += cursor.documentFrequency();
+                weight = Math.max(weight, cursor.maxWeight());
+            }
+            documentFrequency = df;
+            maxWeight = weight;
+        }
+
+        public int nextDoc() {
+            while(current < cursors.length){
+                int docID = cursors[current].nextDoc();
+                if(docID != NO_MORE_DOCS){
+                    return docID;
+                }
+                current++;
+            }
+            return NO_MORE_DOCS;
+        }
+
+        public int advance( int target ) {
+            while(current < cursors.length){
+                int docID = cursors[current].advance(target);
+                if(docID != NO_MORE_DOCS){
+                    return docID;
+                }
+                current++;
+            }
+            return NO_MORE_DOCS;
+        }
+
+        public int docID() {
+            return current < cursors.length ? cursors[current].docID() : NO_MORE_DOCS;
+        }
+
+        public int frequency() {
+            return cursors[current].frequency();
+        }
+
+        public int[] positions() {
+            return cursors[current].positions();
+        }
+
+        public int documentFrequency() {
+            return documentFrequency;
+        }
+
+        public float maxWeight() {
+            return maxWeight;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ *   Reads an index segment written by SegmentWriter. The front coded
+ *   dictionary is read into memory when the segment is opened (see
+ *   TermDictionary). The postings file is memory-mapped read-only, and
+ *   cursors decode postings straight from the mapping, so repeated queries
+ *   are served from the page cache without copying or deserializing
+ *   anything.
+ */
+public class SegmentReader {
+
+    /**
+     *  The largest part of the postings file mapped by one buffer. The
+     *  file is split at term boundaries, so a term's postings always lie
+     *  within one buffer.
+     */
+    static final long MAX_MAPPING_SIZE = 1L << 30;
+
+    private final TermDictionary dictionary;
+
+    /** The mapped parts of the postings file and where each one starts. */
+    private ByteBuffer[] mappings;
+    private long[] mappingStarts;
+
+
+    /**
+     *  Opens the segment in directory path, which is used as a prefix of
+     *  the file names.
+     */
+    public SegmentReader( String path ) throws IOException {
+        dictionary = new TermDictionary(new File(path + SegmentWriter.DICTIONARY_FILE));
+        mapPostings(new File(path + SegmentWriter.POSTINGS_FILE));
+    }
+
+    private void mapPostings( File file ) throws IOException {
+        //Find the parts to map: break before a term whose postings would cross MAX_MAPPING_SIZE.
+        //The dictionary is in offset order.
+        ArrayList<Long> starts = new ArrayList<Long>();
+        starts.add(0L);
+        Iterator<TermInfo> infos = dictionary.infos();
+        while(infos.hasNext()){
+            TermInfo info = infos.next();
+            if(info.length > MAX_MAPPING_SIZE){
+                throw new IOException("Postings too large to map: " + info.length + " bytes");
+            }
+            if(info.offset + info.length - starts.get(starts.size()-1) > MAX_MAPPING_SIZE){
+                starts.add(info.offset);
+            }
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            mappings = new ByteBuffer[starts.size()];
+            mappingStarts = new long[starts.size()];
+            for(int i = 0; i < mappings.length; i++){
+                long start = starts.get(i);
+                long end = (i+1 < mappings.length) ? starts.get(i+1) : size;
+                mappingStarts[i] = start;
+                mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+        }
+        finally {
+            //The mappings stay valid after the channel is closed
+            channel.close();
+        }
+    }
+
+    /**  Returns the dictionary entry of term, or null if it is not in the segment. */
+    public TermInfo lookup( String term ) {
+        return dictionary.lookup(term);
+    }
+
+    /**  Returns all the terms in the segment, in sorted order. */
+    public Iterator<String> terms() {
+        return dictionary.terms();
+    }
+
+    /**  Returns the terms starting with prefix, in sorted order. */
+    public Iterator<String> termsWithPrefix( String prefix ) {
+        return dictionary.termsWithPrefix(prefix);
+    }
+
+    /**  Returns the terms from from (inclusive) to to (exclusive), in sorted order. */
+    public Iterator<String> terms( String from, String to ) {
+        return dictionary.terms(from, to);
+    }
+
+    public int numberOfTerms() {
+        return dictionary.numberOfTerms();
+    }
+
+
+    /**
+     *  Opens a cursor over the postings of term, or returns null if the
+     *  term is not in the segment.
+     */
+    public PostingsCursor cursor( String term ) {
+        TermInfo info = dictionary.lookup(term);
+        if(info == null){
+            return null;
+        }
+        int i = Arrays.binarySearch(mappingStarts, info.offset);
+        if(i < 0){
+            i = -i - 2;
+        }
+        return new MappedCursor(mappings[i], (int) (info.offset - mappingStarts[i]), info.maxWeight, dictionary.codec());
+    }
+
+    /**
+     *  Reads the postings of term into a list, or returns null if the term
+     *  is not in the segment.
+     */
+    public PostingsList getPostings( String term ) {
+        PostingsCursor cursor = cursor(term);
+        return cursor == null ? null : PostingsList.copyOf(cursor);
+    }
+
+
+    /**
+     *  Cursor decoding postings coded as described in SegmentWriter from a
+     *  mapped buffer. A block's docIDs and frequencies are decoded when the
+     *  cursor enters it, its positions only if asked for, and advance()
+     *  uses the skip table to jump over whole blocks.
+     */
+    static class MappedCursor implements PostingsCursor {
+        private final ByteBuffer buffer;
+        private final PostingsCodec codec;
+        /** Where the next block starts. */
+        private int pos;
+        private final int documentFrequency;
+        private final int numberOfSkips;
+        private final int tableStart;
+        private final int dataStart;
+        private final float maxWeight;
+        private int index = -1;
+        private int docID = -1;
+
+        /** The current block: its docIDs, frequencies and where its positions start. */
+        private final int[] docIDs = new int[SegmentWriter.SKIP_INTERVAL];
+        private final int[] frequencies = new int[SegmentWriter.SKIP_INTERVAL];
+        private int blockSize = 0;
+        private int positionsStart;
+        /** The block's positions once decoded, and where each posting's start. */
+        private boolean positionsDecoded = false;
+        private int[] blockPositions = new int[256];
+        private final int[] positionStarts = new int[SegmentWriter.SKIP_INTERVAL + 1];
+        private int[] positions = new int[16];
+
+        MappedCursor( ByteBuffer buffer, int pos, float maxWeight, PostingsCodec codec ) {
+            this.buffer = buffer;
+            this.codec = codec;
+            this.maxWeight = maxWeight;
+            int b = buffer.get(pos++);
+            int df = b & 0x7F;
+            for(int shift = 7; b < 0; shift += 7){
+                b = buffer.get(pos++);
+                df |= (b & 0x7F) << shift;
+            }
+            documentFrequency = df;
+            numberOfSkips = SegmentWriter.numberOfSkips(documentFrequency);
+            tableStart = pos;
+            dataStart = tableStart + 8*numberOfSkips;
+            this.pos = dataStart;
+        }
+
+        /**
+         *  Decodes the docIDs and frequencies of the block at pos, which
+         *  follows the posting with docID last.
+         */
+        private void decodeBlock( int last ) {
+            blockSize = Math.min(SegmentWriter.SKIP_INTERVAL, documentFrequency - index);
+            pos = codec.decode(buffer, pos, blockSize, docIDs);
+            pos = codec.decode(buffer, pos, blockSize, frequencies);
+            for(int i = 0; i < blockSize; i++){
+                last += docIDs[i] + 1;
+                docIDs[i] = last;
+                frequencies[i]++;
+            }
+            int b = buffer.get(pos++);
+            int length = b & 0x7F;
+            for(int shift = 7; b < 0; shift += 7){
+                b = buffer.get(pos++);
+                length |= (b & 0x7F) << shift;
+            }
+            positionsStart = pos;
+            pos += length;
+            positionsDecoded = false;
+        }
+
+        public int nextDoc() {
+            if(++index >= documentFrequency){
+                index = documentFrequency;
+                docID = NO_MORE_DOCS;
+                return NO_MORE_DOCS;
+            }
+            int i = index % SegmentWriter.SKIP_INTERVAL;
+            if(i == 0){
+                decodeBlock(docID);
+            }
+            docID = docIDs[i];
+            return docID;
+        }
+
+        public int advance( int target ) {
+            if(index >= 0 && docID >= target){
+                return docID;
+            }
+            //Skip entry e leads to posting (e+1)*SKIP_INTERVAL; only look at those ahead of us.
+            //Gallop through the table, then binary search for the first entry not below target
+            int first = Math.max(0, index/SegmentWriter.SKIP_INTERVAL);
+            int low = first - 1;
+            int step = 1;
+            while(low + step < numberOfSkips && buffer.getInt(tableStart + 8*(low + step)) < target){
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, numberOfSkips);
+            while(high - low > 1){
+                int mid = (low + high) >>> 1;
+                if(buffer.getInt(tableStart + 8*mid) < target) low = mid;
+                else high = mid;
+            }
+            int e = high;
+            if(e > first){
+                //The target is past the block before entry e-1 leads
+                docID = buffer.getInt(tableStart + 8*(e-1));
+                pos = dataStart + buffer.getInt(tableStart + 8*(e-1) + 4);
+                index = e*SegmentWriter.SKIP_INTERVAL - 1;
+            }
+            while(docID < target || index < 0){
+                if(nextDoc() == NO_MORE_DOCS) break;
+            }
+            return docID;
+        }
+
+        public int docID() {
+            return index < 0 ? -1 : docID;
+        }
+
+        public int frequency() {
+            return frequencies[index % SegmentWriter.SKIP_INTERVAL];
+        }
+
+        public int[] positions() {
+            if(!positionsDecoded){
+                decodePositions();
+            }
+            int i = index % SegmentWriter.SKIP_INTERVAL;
+            int frequency = frequencies[i];
+            if(positions.length < frequency){
+                positions = new int[Math.max(frequency, positions.length*2)];
+            }
+            System.arraycopy(blockPositions, positionStarts[i], positions, 0, frequency);
+            return positions;
+        }
+
+        /**  Decodes the positions of the whole block and undoes their gaps. */
+        private void decodePositions() {
+            int total = 0;
+            for(int i = 0; i < blockSize; i++){
+                positionStarts[i] = total;
+                total += frequencies[i];
+            }
+            positionStarts[blockSize] = total;
+            if(blockPositions.length < total){
+                blockPositions = new int[Math.max(total, blockPositions.length*2)];
+            }
+            codec.decode(buffer, positionsStart, total, blockPositions);
+            for(int i = 0; i < blockSize; i++){
+                for(int k = positionStarts[i] + 1; k < positionStarts[i+1]; k++){
+                    blockPositions[k] += blockPositions[k-1];
+                }
+            }
+            positionsDecoded = true;
+        }
+
+        public int documentFrequency() {
+            return documentFrequency;
+        }
+
+        public float maxWeight() {
+            return maxWeight;
+        }
+    }
+
+
+    /**
+     *  Drops the mappings. They are unmapped once garbage collected.
+     */
+    public void close() throws IOException {
+        mappings = null;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *   Writes an index segment, which is two files in one directory:
+ *
+ *   The postings file holds the postings of all terms one after the
+ *   other. The postings of a term start with the VByte coded document
+ *   frequency. They are then grouped in blocks of SKIP_INTERVAL, and each
+ *   block is coded with the segment's PostingsCodec: the docID gaps (less
+ *   one, the first relative to the last docID of the previous block), the
+ *   term frequencies (less one), the VByte coded number of bytes of the
+ *   positions, and the positions of each posting in turn, the first as is
+ *   and the rest as gaps. So a reader can decode the docIDs of a block
+ *   without its positions.
+ *
+ *   Between the document frequency and the blocks there is a skip table
+ *   with one entry per block after the first: the last docID of the
+ *   previous block and where the block starts, relative to the end of the
+ *   table, both as fixed four-byte ints so the table can be searched in
+ *   place.
+ *
+ *   The dictionary file (see TermDictionary) starts with the number of
+ *   terms (int), where the block index starts (long) and the id of the
+ *   postings codec (int). Then come the
+ *   entries, sorted and front coded in blocks of TermDictionary.
+ *   TERMS_PER_BLOCK: the VByte coded number of leading UTF-8 bytes the
+ *   term shares with the term before it in the block, the number of bytes
+ *   that follow and those bytes, then the VByte coded length and document
+ *   frequency of its postings and their largest weight (float). The
+ *   postings of the terms lie one after the other, so their offsets follow
+ *   from the lengths. The block index at the end has per block the VByte
+ *   coded length of its first term, the term, the offset of the term's
+ *   postings (long) and where the block starts in the file (int).
+ *
+ *   Terms must be added in sorted order. Only the two files are open while
+ *   writing, however large the vocabulary.
+ */
+public class SegmentWriter {
+
+    public static final String DICTIONARY_FILE = "dictionary";
+    public static final String POSTINGS_FILE = "postings";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The number of postings per skip block. */
+    public static final int SKIP_INTERVAL = 128;
+
+    private final PostingsCodec codec;
+    private final FileChannel postings;
+    private final FileChannel dictionary;
+    private final ByteBuffer postingsBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer dictionaryBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** Where the next term's postings start in the postings file. */
+    private long postingsOffset = 0;
+    private int numberOfTerms = 0;
+
+    /** The coded postings of the term being added. */
+    private byte[] scratch = new byte[1024];
+
+    /** The block of postings being coded, and its coded positions. */
+    private final int[] docGaps = new int[SKIP_INTERVAL];
+    private final int[] frequencies = new int[SKIP_INTERVAL];
+    private int[] positionGaps = new int[1024];
+    private byte[] positionBytes = new byte[1024];
+
+    /** The coded dictionary entry of the term being added. */
+    private byte[] entry = new byte[256];
+    private byte[] lastTerm = new byte[0];
+    /** Where the next dictionary entry starts in the dictionary file. */
+    private long dictionaryPosition = TermDictionary.HEADER_SIZE;
+
+    /** The block index, written after the blocks. */
+    private byte[] blockIndex = new byte[1024];
+    private int blockIndexSize = 0;
+
+
+    /**
+     *  Creates (or overwrites) the segment whose file names start with
+     *  path, which normally names a directory, with its postings coded
+     *  by codec.
+     */
+    public SegmentWriter( String path, PostingsCodec codec ) throws IOException {
+        this.codec = codec;
+        File postingsFile = new File(path + POSTINGS_FILE);
+        postingsFile.getAbsoluteFile().getParentFile().mkdirs();
+        postings = FileChannel.open(postingsFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        dictionary = FileChannel.open(new File(path + DICTIONARY_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        //The header is filled in by close()
+        dictionaryBuffer.putInt(0).putLong(0).putInt(0);
+    }
+
+
+    /**
+     *  Appends the postings of term. Terms must come in increasing order.
+     */
+    public void add( String term, PostingsCursor cursor ) throws IOException {
+        int length = encode(cursor);
+        int df = cursor.documentFrequency();
+        put(postings, postingsBuffer, scratch, 0, length);
+
+        byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+        int shared = 0;
+        if(numberOfTerms % TermDictionary.TERMS_PER_BLOCK == 0){
+            addBlock(termBytes);
+        }
+        else{
+            int max = Math.min(termBytes.length, lastTerm.length);
+            while(shared < max && termBytes[shared] == lastTerm[shared]){
+                shared++;
+            }
+        }
+        int rest = termBytes.length - shared;
+        if(entry.length < rest + 4*VByte.MAX_BYTES + 4){
+            entry = new byte[Math.max(rest + 4*VByte.MAX_BYTES + 4, entry.length*2)];
+        }
+        int n = VByte.write(entry, 0, shared);
+        n = VByte.write(entry, n, rest);
+        System.arraycopy(termBytes, shared, entry, n, rest);
+        n += rest;
+        n = VByte.write(entry, n, length);
+        n = VByte.write(entry, n, df);
+        putInt(entry, n, Float.floatToIntBits(cursor.maxWeight()));
+        n += 4;
+        put(dictionary, dictionaryBuffer, entry, 0, n);
+        dictionaryPosition += n;
+        lastTerm = termBytes;
+
+        postingsOffset += length;
+        numberOfTerms++;
+    }
+
+    /**
+     *  Codes the postings of the cursor into scratch.
+     *  @return the number of bytes used
+     */
+    private int encode( PostingsCursor cursor ) {
+        int df = cursor.documentFrequency();
+        int skips = numberOfSkips(df);
+        int tableStart = VByte.write(scratch, 0, df);
+        int dataStart = tableStart + 8*skips;
+        ensureScratch(dataStart);
+        int pos = dataStart;
+        int lastDocID = -1;
+        int n = 0;
+        int numberOfPositions = 0;
+        int blocks = 0;
+        while(cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS){
+            int docID = cursor.docID();
+            int freq = cursor.frequency();
+            docGaps[n] = docID - lastDocID - 1;
+            frequencies[n] = freq - 1;
+            lastDocID = docID;
+            if(positionGaps.length < numberOfPositions + freq){
+                int[] bigger = new int[Math.max(numberOfPositions + freq, positionGaps.length*2)];
+                System.arraycopy(positionGaps, 0, bigger, 0, numberOfPositions);
+                positionGaps = bigger;
+            }
+            int[] positions = cursor.positions();
+            int lastPosition = 0;
+            for(int k = 0; k < freq; k++){
+                positionGaps[numberOfPositions++] = positions[k] - lastPosition;
+                lastPosition = positions[k];
+            }
+            if(++n == SKIP_INTERVAL){
+                pos = encodeBlock(pos, n, numberOfPositions);
+                if(++blocks <= skips){
+                    int entry = tableStart + 8*(blocks - 1);
+                    putInt(scratch, entry, lastDocID);
+                    putInt(scratch, entry + 4, pos - dataStart);
+                }
+                n = 0;
+                numberOfPositions = 0;
+            }
+        }
+        if(n > 0){
+            pos = encodeBlock(pos, n, numberOfPositions);
+        }
+        return pos;
+    }
+
+    /**
+     *  Codes the block of n postings at scratch[pos].
+     *  @return the position after the block
+     */
+    private int encodeBlock( int pos, int n, int numberOfPositions ) {
+        if(positionBytes.length < codec.maxEncodedSize(numberOfPositions)){
+            positionBytes = new byte[Math.max(codec.maxEncodedSize(numberOfPositions), positionBytes.length*2)];
+        }
+        int positionsLength = codec.encode(positionGaps, numberOfPositions, positionBytes, 0);
+        ensureScratch(pos + 2*codec.maxEncodedSize(n) + VByte.MAX_BYTES + positionsLength);
+        pos = codec.encode(docGaps, n, scratch, pos);
+        pos = codec.encode(frequencies, n, scratch, pos);
+        pos = VByte.write(scratch, pos, positionsLength);
+        System.arraycopy(positionBytes, 0, scratch, pos, positionsLength);
+        return pos + positionsLength;
+    }
+
+    /**
+     *  Starts a new dictionary block with term, and adds it to the block
+     *  index.
+     */
+    private void addBlock( byte[] term ) throws IOException {
+        if(dictionaryPosition > Integer.MAX_VALUE){
+            throw new IOException("Dictionary too large");
+        }
+        int needed = blockIndexSize + VByte.MAX_BYTES + term.length + 12;
+        if(blockIndex.length < needed){
+            byte[] bigger = new byte[Math.max(needed, blockIndex.length*2)];
+            System.arraycopy(blockIndex, 0, bigger, 0, blockIndexSize);
+            blockIndex = bigger;
+        }
+        int n = VByte.write(blockIndex, blockIndexSize, term.length);
+        System.arraycopy(term, 0, blockIndex, n, term.length);
+        n += term.length;
+        putInt(blockIndex, n, (int) (postingsOffset >>> 32));
+        putInt(blockIndex, n + 4, (int) postingsOffset);
+        putInt(blockIndex, n + 8, (int) dictionaryPosition);
+        blockIndexSize = n + 12;
+    }
+
+    /**  The number of skip table entries for df postings. */
+    static int numberOfSkips( int df ) {
+        return df == 0 ? 0 : (df - 1)/SKIP_INTERVAL;
+    }
+
+    private static void putInt( byte[] bytes, int pos, int value ) {
+        bytes[pos] = (byte) (value >>> 24);
+        bytes[pos+1] = (byte) (value >>> 16);
+        bytes[pos+2] = (byte) (value >>> 8);
+        bytes[pos+3] = (byte) value;
+    }
+
+    private void ensureScratch( int capacity ) {
+        if(scratch.length < capacity){
+            byte[] bigger = new byte[Math.max(capacity, scratch.length*2)];
+            System.arraycopy(scratch, 0, bigger, 0, scratch.length);
+            scratch = bigger;
+        }
+    }
+
+    private static void put( FileChannel channel, ByteBuffer buffer, byte[] bytes, int from, int length ) throws IOException {
+        while(length > 0){
+            if(!buffer.hasRemaining()){
+                flush(channel, buffer);
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, from, n);
+            from += n;
+            length -= n;
+        }
+    }
+
+    private static void flush( FileChannel channel, ByteBuffer buffer ) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     *  Writes out what is buffered and the block index, fills in the
+     *  header and closes both files.
+     */
+    public void close() throws IOException {
+        flush(postings, postingsBuffer);
+        put(dictionary, dictionaryBuffer, blockIndex, 0, blockIndexSize);
+        flush(dictionary, dictionaryBuffer);
+        ByteBuffer header = ByteBuffer.allocate(TermDictionary.HEADER_SIZE);
+        header.putInt(numberOfTerms).putLong(dictionaryPosition).putInt(codec.id()).flip();
+        while(header.hasRemaining()){
+            dictionary.write(header, header.position());
+        }
+        postings.close();
+        dictionary.close();
+    }
+}
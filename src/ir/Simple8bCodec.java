@@ -0,0 +1,91 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.nio.ByteBuffer;
+
+/**
+ *   Simple-8b: packs as many values as fit into 64-bit words. The top four
+ *   bits of a word select how the other 60 are split, from 60 one-bit
+ *   values to one 60-bit value; selectors 0 and 1 stand for runs of 240
+ *   and 120 zeros. Every word is decoded with one shift and mask per
+ *   value, without looking at single bytes.
+ *
+ *   The words are greedily filled with as many values as the next ones
+ *   allow. The last word may hold fewer values than its selector says;
+ *   the rest is padding, which the decoder never reaches since it knows n.
+ */
+public class Simple8bCodec extends PostingsCodec {
+
+    /** Per selector: how many values a word holds and how many bits each one takes. */
+    private static final int[] COUNT = { 240, 120, 60, 30, 20, 15, 12, 10, 8, 7, 6, 5, 4, 3, 2, 1 };
+    private static final int[] BITS = { 0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 15, 20, 30, 60 };
+
+    public int id() {
+        return 1;
+    }
+
+    public String name() {
+        return "simple8b";
+    }
+
+    public int maxEncodedSize( int n ) {
+        return 8*n;
+    }
+
+    public int encode( int[] values, int n, byte[] out, int pos ) {
+        int i = 0;
+        while(i < n){
+            int selector = 0;
+            while(!fits(values, i, n, selector)){
+                selector++;
+            }
+            int bits = BITS[selector];
+            int end = Math.min(n, i + COUNT[selector]);
+            long word = (long) selector << 60;
+            for(int j = 0; i < end; i++, j += bits){
+                word |= (long) values[i] << j;
+            }
+            for(int shift = 56; shift >= 0; shift -= 8){
+                out[pos++] = (byte) (word >>> shift);
+            }
+        }
+        return pos;
+    }
+
+    /**  True if the values from i on fill a word with the selector. */
+    private static boolean fits( int[] values, int i, int n, int selector ) {
+        int end = Math.min(n, i + COUNT[selector]);
+        //Values are non-negative ints, so more than 30 bits always do
+        if(BITS[selector] > 30) return true;
+        int limit = 1 << BITS[selector];
+        for(; i < end; i++){
+            if(values[i] >= limit) return false;
+        }
+        return true;
+    }
+
+    public int decode( ByteBuffer in, int pos, int n, int[] values ) {
+        int i = 0;
+        while(i < n){
+            long word = in.getLong(pos);
+            pos += 8;
+            int selector = (int) (word >>> 60);
+            int bits = BITS[selector];
+            int end = Math.min(n, i + COUNT[selector]);
+            if(bits == 0){
+                while(i < end) values[i++] = 0;
+                continue;
+            }
+            long mask = (1L << bits) - 1;
+            for(; i < end; i++){
+                values[i] = (int) (word & mask);
+                word >>>= bits;
+            }
+        }
+        return pos;
+    }
+}
@@ -9,6 +9,8 @@ package ir;
 
 import java.io.Reader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 
 public class SimpleTokenizer {
@@ -74,6 +76,21 @@ public class SimpleTokenizer {
     }
 
 
+    /**
+     *  Normalizes a query string like normalize(String), but keeps the
+     *  wildcard character @code{*} of wildcard queries.
+     */
+    public static String normalizeQuery( String s ) {
+	char[] buf = s.toCharArray(); 
+	for ( int i=0; i<buf.length; i++ ) {
+	    if ( buf[i] != '*' && !normalize( buf, i )) {
+		buf[i] = ' ';
+	    }
+	}
+	return new String( buf );
+    }
+
+
     /** 
      *  Normalizes letters by converting to lower-case and removing 
      *  diacritics. This method is also used for checking whether a 
@@ -84,24 +101,194 @@ public class SimpleTokenizer {
      */
 
     public static boolean normalize( char[] buf, int ptr ) {
-	char c = buf[ptr];
-	if (( c >= '0' && c <= '9' ) ||
-	    ( c >= 'a' && c <= 'z' )) {
-	    return true;
+	char c = NORMALIZED[buf[ptr]];
+	if ( c == 0 ) {
+	    return false;
 	}
-	else if ( c >= 'A' && c <= 'Z' ) {
-	    buf[ptr] = (char)(c+32);
-	    return true;
+	buf[ptr] = c;
+	return true;
+    }
+
+
+    /**
+     *  What every character normalizes to, or 0 for characters that
+     *  cannot occur in a token, so normalizing is a single lookup.
+     */
+    private static final char[] NORMALIZED = new char[Character.MAX_VALUE + 1];
+
+    static {
+	// Backwards, so the first of equal special characters wins
+	for ( int i=special_char.length-1; i>=0; i-- ) {
+	    NORMALIZED[special_char[i]] = translation[i];
 	}
-	else {
-	    for ( int i=0; i<special_char.length; i++ ) {
-		if ( special_char[i] == c ) {
-		    buf[ptr] = translation[i];
-		    return true;
+	// Letters and digits go before special characters, as in the scan it replaces
+	for ( int c='0'; c<='z'; c++ ) {
+	    if (( c >= '0' && c <= '9' ) ||
+		( c >= 'a' && c <= 'z' )) {
+		NORMALIZED[c] = (char)c;
+	    }
+	    else if ( c >= 'A' && c <= 'Z' ) {
+		NORMALIZED[c] = (char)(c+32);
+	    }
+	}
+    }
+
+
+    /**
+     *  Tokenizes the whole of the reader and hands every token to handler
+     *  as a slice of the buffer, without making a String of it. Tokens are
+     *  normalized and stripped of @code{#} like those of nextToken(); tokens
+     *  that are left empty are dropped. This must be called instead of, not
+     *  along with, hasMoreTokens() and nextToken().
+     *
+     *  @return the number of tokens handed over.
+     */
+    public int tokenize( TokenHandler handler ) throws IOException {
+	int count = 0;
+	int filled = 0;
+	ptr = 0;
+	// The normalized chars of the current token are buf[tokenStart..end-1]
+	int end = 0;
+	tokenStart = -1;
+	while ( true ) {
+	    if ( ptr == filled ) {
+		if ( tokenStart >= 0 ) {
+		    // Keep the current token, at the start of the buffer
+		    System.arraycopy( buf, tokenStart, buf, 0, end-tokenStart );
+		    end -= tokenStart;
+		    tokenStart = 0;
+		    if ( end == buf.length ) {
+			buf = Arrays.copyOf( buf, buf.length*2 );
+		    }
+		}
+		else {
+		    end = 0;
+		}
+		int n = reader.read( buf, end, buf.length-end );
+		if ( n < 0 ) {
+		    break;
+		}
+		ptr = end;
+		filled = end + n;
+		continue;
+	    }
+	    char c = NORMALIZED[buf[ptr++]];
+	    if ( c == 0 ) {
+		if ( tokenStart >= 0 ) {
+		    if ( end > tokenStart ) {
+			handler.token( buf, tokenStart, end-tokenStart );
+			count++;
+		    }
+		    tokenStart = -1;
+		}
+	    }
+	    else {
+		if ( tokenStart < 0 ) {
+		    tokenStart = end = ptr-1;
+		}
+		if ( c != '#' ) {
+		    buf[end++] = c;
 		}
 	    }
-	    return false;
 	}
+	if ( tokenStart >= 0 && end > tokenStart ) {
+	    handler.token( buf, tokenStart, end-tokenStart );
+	    count++;
+	}
+	buf[0] = 0;
+	ptr = 0;
+	tokenStart = -1;
+	started_reading = true;
+	return count;
+    }
+
+
+    /**
+     *  Tokenizes UTF-8 text from bytes' position to its limit, like
+     *  tokenize( TokenHandler ) but straight from the bytes, without a
+     *  Reader or a charset decoder. ASCII characters take one table lookup;
+     *  other characters are decoded first. Malformed sequences count as
+     *  one replacement character each, as when decoding, and characters
+     *  outside the Basic Multilingual Plane never occur in tokens.
+     *
+     *  @return the number of tokens handed over.
+     */
+    public static int tokenize( ByteBuffer bytes, TokenHandler handler ) {
+	int count = 0;
+	char[] token = new char[64];
+	int length = 0;
+	boolean inToken = false;
+	int i = bytes.position();
+	int end = bytes.limit();
+	while ( i < end ) {
+	    int b = bytes.get( i++ );
+	    char c;
+	    if ( b >= 0 ) {
+		c = NORMALIZED[b];
+	    }
+	    else {
+		int codePoint;
+		int following;
+		if (( b & 0xE0 ) == 0xC0 ) {
+		    codePoint = b & 0x1F;
+		    following = 1;
+		}
+		else if (( b & 0xF0 ) == 0xE0 ) {
+		    codePoint = b & 0x0F;
+		    following = 2;
+		}
+		else if (( b & 0xF8 ) == 0xF0 ) {
+		    codePoint = b & 0x07;
+		    following = 3;
+		}
+		else {
+		    // A continuation byte without a lead byte
+		    codePoint = -1;
+		    following = 0;
+		}
+		for ( ; following > 0 && i < end; following-- ) {
+		    int x = bytes.get( i );
+		    if (( x & 0xC0 ) != 0x80 ) {
+			break;
+		    }
+		    codePoint = ( codePoint << 6 ) | ( x & 0x3F );
+		    i++;
+		}
+		if ( codePoint < 0 || following > 0 ) {
+		    c = NORMALIZED['\uFFFD'];
+		}
+		else if ( codePoint > Character.MAX_VALUE ) {
+		    c = 0;
+		}
+		else {
+		    c = NORMALIZED[codePoint];
+		}
+	    }
+	    if ( c == 0 ) {
+		if ( inToken ) {
+		    if ( length > 0 ) {
+			handler.token( token, 0, length );
+			count++;
+		    }
+		    inToken = false;
+		    length = 0;
+		}
+	    }
+	    else {
+		inToken = true;
+		if ( c != '#' ) {
+		    if ( length == token.length ) {
+			token = Arrays.copyOf( token, length*2 );
+		    }
+		    token[length++] = c;
+		}
+	    }
+	}
+	if ( length > 0 ) {
+	    handler.token( token, 0, length );
+	    count++;
+	}
+	return count;
     }
 
 
@@ -127,14 +314,14 @@ public class SimpleTokenizer {
 	if ( !started_reading ) {
 	    s = readToken();
 	    if ( s != null ) {
-		s = s.replaceAll( "#", "" );
+		s = removeHashes( s );
 		nextTok = readToken();
 	    }
 	    return s;
 	}
 	else {
 	    if ( nextTok != null ) {
-		s = nextTok.replaceAll( "#", "" );
+		s = removeHashes( nextTok );
 	    }
 	    nextTok = readToken();
 	    return s;
@@ -142,6 +329,24 @@ public class SimpleTokenizer {
     }
 
 
+    /**
+     *  Removes the @code{#} characters that stand for characters to drop.
+     */
+    private static String removeHashes( String s ) {
+	if ( s.indexOf( '#' ) < 0 ) {
+	    return s;
+	}
+	char[] chars = new char[s.length()];
+	int n = 0;
+	for ( int i=0; i<s.length(); i++ ) {
+	    if ( s.charAt( i ) != '#' ) {
+		chars[n++] = s.charAt( i );
+	    }
+	}
+	return new String( chars, 0, n );
+    }
+
+
     /**
      *  Reads the next token. 
      */ 
@@ -0,0 +1,101 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *   A query-independent score per document of an index, such as its
+ *   PageRank, by docID.
+ *
+ *   On disc it is a magic number, the number of documents, the largest
+ *   score and then the scores as floats, and it is read memory-mapped: the
+ *   scores are never copied onto the heap. Documents without a score (or
+ *   beyond the end of the file) score 0.
+ */
+public class StaticScores {
+
+    /** The file HashedIndex looks for next to an index on disc. */
+    public static final String FILE = "pagerank";
+    static final int MAGIC = 0x49525052;
+    static final int HEADER_SIZE = 12;
+
+    private final FloatBuffer scores;
+    private final float max;
+
+
+    private StaticScores( FloatBuffer scores, float max ) {
+        this.scores = scores;
+        this.max = max;
+    }
+
+    /**
+     *  Writes scores[0..n-1] as the scores of documents 0..n-1.
+     */
+    public static void write( String path, float[] scores ) throws IOException {
+        float max = 0;
+        for(float score: scores){
+            max = Math.max(max, score);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(scores.length);
+            out.writeFloat(max);
+            for(float score: scores){
+                out.writeFloat(score);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     *  Maps scores written by write().
+     */
+    public static StaticScores map( String path ) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC){
+                throw new IOException("No scores in " + path);
+            }
+            int size = buffer.getInt(4);
+            if(buffer.limit() < HEADER_SIZE + 4L*size){
+                throw new IOException("Scores cut short in " + path);
+            }
+            buffer.position(HEADER_SIZE);
+            FloatBuffer scores = buffer.slice().asFloatBuffer();
+            scores.limit(size);
+            return new StaticScores(scores, buffer.getFloat(8));
+        } finally {
+            //The mapping stays valid after the channel is closed
+            channel.close();
+        }
+    }
+
+    public int size() {
+        return scores.limit();
+    }
+
+    /**  The score of document docID. */
+    public float score( int docID ) {
+        return (docID >= 0 && docID < scores.limit()) ? scores.get(docID) : 0;
+    }
+
+    /**  The largest score of any document. */
+    public float max() {
+        return max;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *   The sorted term dictionary of a segment, as written by SegmentWriter.
+ *
+ *   The terms are front coded in blocks of TERMS_PER_BLOCK. The file is
+ *   kept as one byte array, and only the first term of every block and
+ *   where the block starts are decoded when the dictionary is opened.
+ *   Looking up a term is a binary search over those first terms followed
+ *   by a scan of one block. Iterating over the terms goes in sorted order,
+ *   so prefix and range iteration only decode the blocks they cover.
+ */
+public class TermDictionary {
+
+    /** The number of terms per front coded block. */
+    public static final int TERMS_PER_BLOCK = 16;
+
+    /** The size of the header: the number of terms, where the block index starts and the postings codec. */
+    static final int HEADER_SIZE = 16;
+
+    private final byte[] bytes;
+    private final int numberOfTerms;
+    private final PostingsCodec codec;
+
+    /** Per block: its first term, where it starts and where its first term's postings start. */
+    private final String[] firstTerms;
+    private final int[] blockStarts;
+    private final long[] blockOffsets;
+
+
+    public TermDictionary( File file ) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new IOException("Dictionary too large: " + channel.size() + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer) < 0){
+                    throw new IOException("Unexpected end of dictionary");
+                }
+            }
+            bytes = buffer.array();
+        }
+        finally {
+            channel.close();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        numberOfTerms = buffer.getInt();
+        int pos = (int) buffer.getLong();
+        codec = PostingsCodec.forId(buffer.getInt());
+        if(codec == null){
+            throw new IOException("Unknown postings codec in " + file);
+        }
+        int blocks = (numberOfTerms + TERMS_PER_BLOCK - 1)/TERMS_PER_BLOCK;
+        firstTerms = new String[blocks];
+        blockStarts = new int[blocks];
+        blockOffsets = new long[blocks];
+        int[] value = new int[1];
+        for(int b = 0; b < blocks; b++){
+            pos = VByte.readDeltas(bytes, pos, 1, value);
+            firstTerms[b] = new String(bytes, pos, value[0], StandardCharsets.UTF_8);
+            buffer.position(pos + value[0]);
+            blockOffsets[b] = buffer.getLong();
+            blockStarts[b] = buffer.getInt();
+            pos = buffer.position();
+        }
+    }
+
+    public int numberOfTerms() {
+        return numberOfTerms;
+    }
+
+    /**  The codec the segment's postings are coded with. */
+    public PostingsCodec codec() {
+        return codec;
+    }
+
+    /**  Returns the entry of term, or null if it is not in the dictionary. */
+    public TermInfo lookup( String term ) {
+        int b = Arrays.binarySearch(firstTerms, term);
+        if(b < 0){
+            b = -b - 2;
+            if(b < 0) return null;
+        }
+        byte[] target = term.getBytes(StandardCharsets.UTF_8);
+        Entries entries = new Entries(b);
+        for(int i = 0; i < TERMS_PER_BLOCK && entries.next(); i++){
+            if(entries.termLength == target.length && entries.termEquals(target)){
+                return entries.info();
+            }
+        }
+        return null;
+    }
+
+    /**  All the terms, in sorted order. */
+    public Iterator<String> terms() {
+        return new Terms(0, null, null, null);
+    }
+
+    /**  The terms from from (inclusive) to to (exclusive), in sorted order. */
+    public Iterator<String> terms( String from, String to ) {
+        return new Terms(firstBlock(from), from, to, null);
+    }
+
+    /**  The terms that start with prefix, in sorted order. */
+    public Iterator<String> termsWithPrefix( String prefix ) {
+        return new Terms(firstBlock(prefix), prefix, null, prefix);
+    }
+
+    /**  Iterates over all the entries, in sorted order (and so in offset order). */
+    Iterator<TermInfo> infos() {
+        final Entries entries = new Entries(0);
+        return new Iterator<TermInfo>() {
+            private boolean ready = entries.next();
+
+            public boolean hasNext() {
+                return ready;
+            }
+
+            public TermInfo next() {
+                if(!ready) throw new NoSuchElementException();
+                TermInfo info = entries.info();
+                ready = entries.next();
+                return info;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**  The block that may hold the first term at or after term. */
+    private int firstBlock( String term ) {
+        int b = Arrays.binarySearch(firstTerms, term);
+        if(b < 0){
+            b = Math.max(0, -b - 2);
+        }
+        return b;
+    }
+
+
+    /**
+     *  Decodes the entries one after the other from the start of a block.
+     */
+    private class Entries {
+        private int index;
+        private int pos;
+        private byte[] term = new byte[64];
+        int termLength = 0;
+        private long offset;
+        private int length = 0;
+        private int documentFrequency;
+        private float maxWeight;
+        private final int[] value = new int[1];
+
+        Entries( int block ) {
+            index = block*TERMS_PER_BLOCK;
+            if(block < blockStarts.length){
+                pos = blockStarts[block];
+                offset = blockOffsets[block];
+            }
+        }
+
+        /**  Moves to the next entry, or returns false if there is none. */
+        boolean next() {
+            if(index >= numberOfTerms){
+                return false;
+            }
+            offset += length;
+            pos = VByte.readDeltas(bytes, pos, 1, value);
+            int shared = value[0];
+            pos = VByte.readDeltas(bytes, pos, 1, value);
+            int suffix = value[0];
+            if(shared + suffix > term.length){
+                term = Arrays.copyOf(term, Math.max(shared + suffix, term.length*2));
+            }
+            System.arraycopy(bytes, pos, term, shared, suffix);
+            pos += suffix;
+            termLength = shared + suffix;
+            pos = VByte.readDeltas(bytes, pos, 1, value);
+            length = value[0];
+            pos = VByte.readDeltas(bytes, pos, 1, value);
+            documentFrequency = value[0];
+            maxWeight = Float.intBitsToFloat(((bytes[pos] & 0xFF) << 24) | ((bytes[pos+1] & 0xFF) << 16)
+                                             | ((bytes[pos+2] & 0xFF) << 8) | (bytes[pos+3] & 0xFF));
+            pos += 4;
+            if(index % TERMS_PER_BLOCK == 0){
+                //The first entry of a block starts at the block's offset
+                offset = blockOffsets[index/TERMS_PER_BLOCK];
+            }
+            index++;
+            return true;
+        }
+
+        boolean termEquals( byte[] target ) {
+            for(int i = 0; i < termLength; i++){
+                if(term[i] != target[i]) return false;
+            }
+            return true;
+        }
+
+        String term() {
+            return new String(term, 0, termLength, StandardCharsets.UTF_8);
+        }
+
+        TermInfo info() {
+            return new TermInfo(offset, length, documentFrequency, maxWeight);
+        }
+    }
+
+
+    /**
+     *  Iterates over the terms from the first one at or after from, while
+     *  they are before to and start with prefix (if those are given).
+     */
+    private class Terms implements Iterator<String> {
+        private final Entries entries;
+        private final String to;
+        private final String prefix;
+        private String next;
+
+        Terms( int block, String from, String to, String prefix ) {
+            this.to = to;
+            this.prefix = prefix;
+            entries = new Entries(block);
+            next = advance();
+            while(next != null && from != null && next.compareTo(from) < 0){
+                next = advance();
+            }
+            if(next != null && !inRange(next)){
+                next = null;
+            }
+        }
+
+        private String advance() {
+            return entries.next() ? entries.term() : null;
+        }
+
+        private boolean inRange( String term ) {
+            return (to == null || term.compareTo(to) < 0) && (prefix == null || term.startsWith(prefix));
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public String next() {
+            if(next == null) throw new NoSuchElementException();
+            String term = next;
+            next = advance();
+            if(next != null && !inRange(next)){
+                next = null;
+            }
+            return term;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
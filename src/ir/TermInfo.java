@@ -0,0 +1,27 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+/**
+ *   Dictionary entry of a term in an index segment: where its postings
+ *   start in the postings file, how many bytes they take, in how many
+ *   documents the term occurs and the largest weight it has in any of
+ *   them (see PostingsCursor.maxWeight()).
+ */
+public class TermInfo {
+
+    public final long offset;
+    public final int length;
+    public final int documentFrequency;
+    public final float maxWeight;
+
+    public TermInfo( long offset, int length, int documentFrequency, float maxWeight ) {
+        this.offset = offset;
+        this.length = length;
+        this.documentFrequency = documentFrequency;
+        this.maxWeight = maxWeight;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *   Gives terms dense ids, 0, 1, 2, ... in the order they are first seen,
+ *   so that whatever is kept per term can live in arrays indexed by id.
+ *
+ *   The chars of all terms lie one after the other in one arena, and the
+ *   ids are found through an open addressing table (linear probing, at
+ *   most half full) that is probed with a slice of chars. Interning a
+ *   token that is already known allocates nothing, and a new term costs
+ *   its chars in the arena and a few ints, not a String and a map entry.
+ */
+public class TermLexicon {
+
+    private char[] chars = new char[1024];
+    private int numberOfChars = 0;
+
+    /** Per id: where its chars start in the arena, and its hash code. One more start ends the last term. */
+    private int[] starts = new int[65];
+    private int[] hashes = new int[64];
+    private int size = 0;
+
+    /** The table: id + 1 per slot, or 0 for an empty slot. */
+    private int[] table = new int[128];
+
+
+    /**  The number of terms. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Returns the id of the term chars[start..start+length-1], giving it
+     *  the next id if it is new.
+     */
+    public int intern( char[] term, int start, int length ) {
+        int hash = hash(term, start, length);
+        int slot = find(hash, term, start, length);
+        if(table[slot] != 0){
+            return table[slot] - 1;
+        }
+        int id = size++;
+        if(numberOfChars + length > chars.length){
+            chars = Arrays.copyOf(chars, Math.max(numberOfChars + length, chars.length*2));
+        }
+        System.arraycopy(term, start, chars, numberOfChars, length);
+        numberOfChars += length;
+        if(size == hashes.length){
+            hashes = Arrays.copyOf(hashes, size*2);
+            starts = Arrays.copyOf(starts, size*2 + 1);
+        }
+        hashes[id] = hash;
+        starts[id + 1] = numberOfChars;
+        table[slot] = id + 1;
+        if(2*size > table.length){
+            rehash();
+        }
+        return id;
+    }
+
+    public int intern( String term ) {
+        return intern(term.toCharArray(), 0, term.length());
+    }
+
+    /**  Returns the id of the term chars[start..start+length-1], or -1 if it is not known. */
+    public int find( char[] term, int start, int length ) {
+        int slot = find(hash(term, start, length), term, start, length);
+        return table[slot] - 1;
+    }
+
+    public int find( String term ) {
+        return find(term.toCharArray(), 0, term.length());
+    }
+
+    /**  The slot holding the term, or the empty slot where it would go. */
+    private int find( int hash, char[] term, int start, int length ) {
+        int mask = table.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while(table[slot] != 0){
+            int id = table[slot] - 1;
+            if(hashes[id] == hash && equals(id, term, start, length)){
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean equals( int id, char[] term, int start, int length ) {
+        int from = starts[id];
+        if(starts[id + 1] - from != length) return false;
+        for(int i = 0; i < length; i++){
+            if(chars[from + i] != term[start + i]) return false;
+        }
+        return true;
+    }
+
+    /**  The same hash code as the term's String would have. */
+    private static int hash( char[] term, int start, int length ) {
+        int hash = 0;
+        for(int i = start; i < start + length; i++){
+            hash = 31*hash + term[i];
+        }
+        return hash;
+    }
+
+    private void rehash() {
+        table = new int[table.length*2];
+        int mask = table.length - 1;
+        for(int id = 0; id < size; id++){
+            int slot = (hashes[id] ^ (hashes[id] >>> 16)) & mask;
+            while(table[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    /**
+     *  The arena. The chars of term id are chars()[start(id)..start(id)+
+     *  length(id)-1]; the array is replaced when the arena grows.
+     */
+    public char[] chars() {
+        return chars;
+    }
+
+    public int start( int id ) {
+        return starts[id];
+    }
+
+    public int length( int id ) {
+        return starts[id + 1] - starts[id];
+    }
+
+    /**  The term with the given id, as a new String. */
+    public String term( int id ) {
+        return new String(chars, starts[id], length(id));
+    }
+
+    /**  All the terms, in id order. */
+    public Iterator<String> terms() {
+        return new Iterator<String>() {
+            private int id = 0;
+
+            public boolean hasNext() {
+                return id < size;
+            }
+
+            public String next() {
+                if(id >= size) throw new NoSuchElementException();
+                return term(id++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     *  Roughly the number of bytes the lexicon takes on the heap, counting
+     *  the full capacity of its arrays.
+     */
+    public long memoryUsage() {
+        return 80 + 2L*chars.length + 4L*(starts.length + hashes.length + table.length);
+    }
+}
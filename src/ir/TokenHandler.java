@@ -0,0 +1,20 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+/**
+ *   Receives the tokens of a document from SimpleTokenizer.tokenize(), in
+ *   order, as slices of the tokenizer's buffer.
+ */
+public interface TokenHandler {
+
+    /**
+     *  Takes the next token, which is chars[start..start+length-1]. The
+     *  chars are only valid during the call; they are overwritten as the
+     *  tokenizer moves on.
+     */
+    public void token( char[] chars, int start, int length );
+}
@@ -0,0 +1,145 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.util.Arrays;
+
+/**
+ *   Collects the k highest scoring documents of a ranked query. The kept
+ *   documents form a binary min-heap in two primitive arrays, with the
+ *   worst kept document at the root, so each new score is compared with
+ *   the root and costs O(log k) only if it gets in. Memory depends on k,
+ *   not on the number of matching documents.
+ *
+ *   Equal scores are ordered by docID, smallest first, so the result does
+ *   not depend on the order in which documents are scored.
+ */
+public class TopScores {
+
+    private final int k;
+    private int size = 0;
+    private int[] docIDs;
+    private double[] scores;
+
+    /** The number of documents added, kept or not, or counted. */
+    private int numberOfMatches = 0;
+
+
+    public TopScores( int k ) {
+        this.k = k;
+        int capacity = Math.max(1, Math.min(k, 16));
+        docIDs = new int[capacity];
+        scores = new double[capacity];
+    }
+
+    /**
+     *  Offers a scored document. Each document must be added at most once.
+     */
+    public void add( int docID, double score ) {
+        numberOfMatches++;
+        if(size < k){
+            if(size == docIDs.length){
+                int capacity = (int) Math.min(k, 2L*size);
+                docIDs = Arrays.copyOf(docIDs, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            docIDs[size] = docID;
+            scores[size] = score;
+            up(size++);
+        }
+        else if(k > 0 && worse(docIDs[0], scores[0], docID, score)){
+            docIDs[0] = docID;
+            scores[0] = score;
+            down(0);
+        }
+    }
+
+    /**  True once k documents are kept. */
+    public boolean isFull() {
+        return size == k;
+    }
+
+    /**
+     *  The lowest score kept once k documents are kept; a new document
+     *  must beat it to get in. Negative infinity until then.
+     */
+    public double threshold() {
+        return isFull() && k > 0 ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     *  Counts n matching documents that were not offered because they
+     *  could not make the top k.
+     */
+    public void countMatches( int n ) {
+        numberOfMatches += n;
+    }
+
+    /**
+     *  The number of matching documents. Ranked queries offer or count
+     *  every document that matches, so this is exact however much they
+     *  prune; it is what SearchGUI reports as found.
+     */
+    public int numberOfMatches() {
+        return numberOfMatches;
+    }
+
+    /**
+     *  Returns the kept documents by descending score, and empties the heap.
+     */
+    public PostingsList toPostingsList() {
+        int n = size;
+        int[] sortedIDs = new int[n];
+        double[] sortedScores = new double[n];
+        //Popping the root repeatedly gives the documents worst first
+        for(int i = n-1; i >= 0; i--){
+            sortedIDs[i] = docIDs[0];
+            sortedScores[i] = scores[0];
+            size--;
+            docIDs[0] = docIDs[size];
+            scores[0] = scores[size];
+            down(0);
+        }
+        PostingsList list = new PostingsList();
+        for(int i = 0; i < n; i++){
+            list.addResult(sortedIDs[i], sortedScores[i]);
+        }
+        list.setNumberOfMatches(numberOfMatches);
+        return list;
+    }
+
+    /**  True if document a ranks below document b. */
+    private static boolean worse( int a, double scoreA, int b, double scoreB ) {
+        return scoreA < scoreB || (scoreA == scoreB && a > b);
+    }
+
+    private void up( int i ) {
+        while(i > 0){
+            int parent = (i-1) >>> 1;
+            if(!worse(docIDs[i], scores[i], docIDs[parent], scores[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void down( int i ) {
+        while(true){
+            int child = 2*i + 1;
+            if(child >= size) break;
+            if(child+1 < size && worse(docIDs[child+1], scores[child+1], docIDs[child], scores[child])){
+                child++;
+            }
+            if(!worse(docIDs[child], scores[child], docIDs[i], scores[i])) break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap( int i, int j ) {
+        int id = docIDs[i]; docIDs[i] = docIDs[j]; docIDs[j] = id;
+        double s = scores[i]; scores[i] = scores[j]; scores[j] = s;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.util.Arrays;
+
+/**
+ *   The union of the postings of several terms, as one term: the postings
+ *   of a wildcard term. The cursors are merged with a binary min-heap on
+ *   their current docIDs, so moving to the next document costs O(log n)
+ *   per cursor on it, however many terms there are.
+ *
+ *   In a document, the frequency is the sum of the frequencies of the terms
+ *   in it and the positions are all their positions. The document
+ *   frequency is not known without merging all the postings, so the sum
+ *   of the terms' document frequencies (at most numberOfDocuments) stands
+ *   in for it.
+ */
+public class UnionCursor implements PostingsCursor {
+
+    /** The cursors that are not exhausted, as a heap on their docIDs. */
+    private final PostingsCursor[] heap;
+    private int size;
+    private boolean started = false;
+
+    private final int documentFrequency;
+    private final float maxWeight;
+
+    /** The cursors on the current document, gathered by gather(). */
+    private final PostingsCursor[] current;
+    private int numberOfCurrent = -1;
+    private int[] positions = new int[16];
+
+
+    public UnionCursor( PostingsCursor[] cursors, int numberOfDocuments ) {
+        heap = cursors.clone();
+        size = heap.length;
+        current = new PostingsCursor[heap.length];
+        long df = 0;
+        float weight = 0;
+        for(PostingsCursor cursor: cursors){
+            df += cursor.documentFrequency();
+            weight += cursor.maxWeight();
+        }
+        documentFrequency = (int) Math.min(df, Math.max(numberOfDocuments, 1));
+        //The weights of the terms in a document add up to the weight of the union, at most about 1
+        maxWeight = Math.min(weight, Math.nextUp(1f));
+    }
+
+    public int nextDoc() {
+        if(!started){
+            started = true;
+            for(PostingsCursor cursor: heap){
+                cursor.nextDoc();
+            }
+            heapify();
+        }
+        else if(size > 0){
+            int docID = heap[0].docID();
+            while(size > 0 && heap[0].docID() == docID){
+                heap[0].nextDoc();
+                fixRoot();
+            }
+        }
+        numberOfCurrent = -1;
+        return docID();
+    }
+
+    public int advance( int target ) {
+        if(!started){
+            started = true;
+            for(PostingsCursor cursor: heap){
+                cursor.advance(target);
+            }
+            heapify();
+        }
+        else{
+            while(size > 0 && heap[0].docID() < target){
+                heap[0].advance(target);
+                fixRoot();
+            }
+        }
+        numberOfCurrent = -1;
+        return docID();
+    }
+
+    public int docID() {
+        if(!started) return -1;
+        return size == 0 ? NO_MORE_DOCS : heap[0].docID();
+    }
+
+    public int frequency() {
+        gather();
+        int frequency = 0;
+        for(int i = 0; i < numberOfCurrent; i++){
+            frequency += current[i].frequency();
+        }
+        return frequency;
+    }
+
+    public int[] positions() {
+        gather();
+        int n = 0;
+        for(int i = 0; i < numberOfCurrent; i++){
+            int frequency = current[i].frequency();
+            if(positions.length < n + frequency){
+                positions = Arrays.copyOf(positions, Math.max(n + frequency, positions.length*2));
+            }
+            System.arraycopy(current[i].positions(), 0, positions, n, frequency);
+            n += frequency;
+        }
+        //Each position holds one token, so the terms' positions never coincide
+        if(numberOfCurrent > 1){
+            Arrays.sort(positions, 0, n);
+        }
+        return positions;
+    }
+
+    public int documentFrequency() {
+        return documentFrequency;
+    }
+
+    public float maxWeight() {
+        return maxWeight;
+    }
+
+    /**  Finds the cursors on the current document, which sit at the top of the heap. */
+    private void gather() {
+        if(numberOfCurrent >= 0) return;
+        numberOfCurrent = 0;
+        if(size > 0){
+            gather(0, heap[0].docID());
+        }
+    }
+
+    private void gather( int i, int docID ) {
+        if(i >= size || heap[i].docID() != docID) return;
+        current[numberOfCurrent++] = heap[i];
+        gather(2*i + 1, docID);
+        gather(2*i + 2, docID);
+    }
+
+    private void heapify() {
+        //Drop the exhausted cursors, then sift down from the last parent
+        int n = 0;
+        for(int i = 0; i < size; i++){
+            if(heap[i].docID() != NO_MORE_DOCS){
+                heap[n++] = heap[i];
+            }
+        }
+        size = n;
+        for(int i = size/2 - 1; i >= 0; i--){
+            down(i);
+        }
+    }
+
+    /**  Restores the heap after the root has moved forward. */
+    private void fixRoot() {
+        if(heap[0].docID() == NO_MORE_DOCS){
+            heap[0] = heap[--size];
+            heap[size] = null;
+        }
+        if(size > 0){
+            down(0);
+        }
+    }
+
+    private void down( int i ) {
+        PostingsCursor cursor = heap[i];
+        int docID = cursor.docID();
+        while(true){
+            int child = 2*i + 1;
+            if(child >= size) break;
+            if(child + 1 < size && heap[child + 1].docID() < heap[child].docID()){
+                child++;
+            }
+            if(heap[child].docID() >= docID) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = cursor;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+/**
+ *   Variable-byte coding of non-negative ints: seven bits per byte, least
+ *   significant group first, with the high bit set on every byte except
+ *   the last one of a number.
+ *
+ *   Sorted sequences such as positions are stored as a block where the
+ *   first value is written as is and every following value as the gap
+ *   to its predecessor.
+ */
+public final class VByte {
+
+    /** The largest number of bytes one int can take. */
+    public static final int MAX_BYTES = 5;
+
+    private VByte() {
+    }
+
+    /**
+     *  Writes value at buf[pos]. The caller makes sure there is room for
+     *  MAX_BYTES bytes.
+     *  @return the position after the written bytes.
+     */
+    public static int write( byte[] buf, int pos, int value ) {
+        while((value & ~0x7F) != 0){
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**  The number of bytes write() uses for value. */
+    public static int size( int value ) {
+        int n = 1;
+        while((value & ~0x7F) != 0){
+            value >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     *  Decodes count delta-coded values starting at buf[pos] into
+     *  out[0..count-1], undoing the gaps.
+     *  @return the position after the last decoded byte.
+     */
+    public static int readDeltas( byte[] buf, int pos, int count, int[] out ) {
+        int value = 0;
+        for(int i = 0; i < count; i++){
+            int b = buf[pos++];
+            int gap = b & 0x7F;
+            for(int shift = 7; b < 0; shift += 7){
+                b = buf[pos++];
+                gap |= (b & 0x7F) << shift;
+            }
+            value = (i == 0) ? gap : value + gap;
+            out[i] = value;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.nio.ByteBuffer;
+
+/**
+ *   Codes every value on its own with VByte. Simple, and small values take
+ *   a single byte, but decoding branches on every byte.
+ */
+public class VByteCodec extends PostingsCodec {
+
+    public int id() {
+        return 0;
+    }
+
+    public String name() {
+        return "vbyte";
+    }
+
+    public int maxEncodedSize( int n ) {
+        return n*VByte.MAX_BYTES;
+    }
+
+    public int encode( int[] values, int n, byte[] out, int pos ) {
+        for(int i = 0; i < n; i++){
+            pos = VByte.write(out, pos, values[i]);
+        }
+        return pos;
+    }
+
+    public int decode( ByteBuffer in, int pos, int n, int[] values ) {
+        for(int i = 0; i < n; i++){
+            int b = in.get(pos++);
+            int value = b & 0x7F;
+            for(int shift = 7; b < 0; shift += 7){
+                b = in.get(pos++);
+                value |= (b & 0x7F) << shift;
+            }
+            values[i] = value;
+        }
+        return pos;
+    }
+}
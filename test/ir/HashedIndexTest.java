@@ -0,0 +1,149 @@
+/*
+ *   This file is part of the computer assignment for the
+ *   Information Retrieval course at KTH.
+ */
+
+package ir;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class HashedIndexTest {
+
+    /**
+     *  An index in memory of the documents, each a string of tokens
+     *  separated by spaces; document i gets docID i.
+     */
+    private static HashedIndex index( String... documents ) throws IOException {
+        HashedIndex index = new HashedIndex(null, false, null, false);
+        for(int docID = 0; docID < documents.length; docID++){
+            String[] tokens = documents[docID].split(" ");
+            Map<String,ArrayList<Integer>> offsets = new LinkedHashMap<String,ArrayList<Integer>>();
+            for(int offset = 0; offset < tokens.length; offset++){
+                if(!offsets.containsKey(tokens[offset])){
+                    offsets.put(tokens[offset], new ArrayList<Integer>());
+                }
+                offsets.get(tokens[offset]).add(offset);
+            }
+            for(Map.Entry<String,ArrayList<Integer>> entry: offsets.entrySet()){
+                int[] array = new int[entry.getValue().size()];
+                for(int i = 0; i < array.length; i++){
+                    array[i] = entry.getValue().get(i);
+                }
+                index.insert(entry.getKey(), docID, array, array.length, tokens.length);
+            }
+            index.getStatistics().setDocumentLength(docID, tokens.length);
+        }
+        return index;
+    }
+
+    private static String repeat( String token, int times ) {
+        StringBuilder sb = new StringBuilder(token);
+        for(int i = 1; i < times; i++){
+            sb.append(' ').append(token);
+        }
+        return sb.toString();
+    }
+
+    private static PostingsList ranked( Index index, String query, int k ) {
+        return index.search(new Query(query), Index.RANKED_QUERY, Index.TF_IDF, Index.UNIGRAM, k);
+    }
+
+    private static void assertSameTop( PostingsList all, PostingsList top, int k ) {
+        assertEquals(Math.min(k, all.size()), top.size());
+        for(int i = 0; i < top.size(); i++){
+            assertEquals(all.get(i).docID, top.get(i).docID);
+            assertEquals(all.get(i).score, top.get(i).score, 1e-12);
+        }
+    }
+
+    /**
+     *  With k = 5 the documents with only "a" cannot beat the five with
+     *  both terms, so WAND passes over them; they still match.
+     */
+    @Test
+    public void wandCountsTheDocumentsItPassesOver() throws IOException {
+        String[] documents = new String[16];
+        for(int i = 0; i < 5; i++){
+            documents[i] = "a b";
+        }
+        for(int i = 5; i < 8; i++){
+            documents[i] = "a z";
+        }
+        for(int i = 8; i < 16; i++){
+            documents[i] = "z z";
+        }
+        HashedIndex index = index(documents);
+        PostingsList all = ranked(index, "a b", Integer.MAX_VALUE);
+        PostingsList top = ranked(index, "a b", 5);
+        assertEquals(8, all.numberOfMatches());
+        assertEquals(all.numberOfMatches(), top.numberOfMatches());
+        assertSameTop(all, top, 5);
+    }
+
+    /**
+     *  A query of more terms than WAND takes is scored term at a time. Once
+     *  the five documents with "t0" are in, the documents with only one of
+     *  the other terms cannot get in and get no accumulator; they still
+     *  match.
+     */
+    @Test
+    public void termAtATimeCountsTheDocumentsWithoutAccumulator() throws IOException {
+        String[] documents = new String[20];
+        for(int i = 0; i < 5; i++){
+            documents[i] = "t0";
+        }
+        StringBuilder query = new StringBuilder("t0");
+        for(int j = 1; j < 10; j++){
+            documents[4 + j] = "t" + j + " " + repeat("z", 99);
+            query.append(" t").append(j);
+        }
+        for(int i = 14; i < 20; i++){
+            documents[i] = "y";
+        }
+        HashedIndex index = index(documents);
+        PostingsList all = ranked(index, query.toString(), Integer.MAX_VALUE);
+        PostingsList top = ranked(index, query.toString(), 5);
+        assertEquals(14, all.numberOfMatches());
+        assertEquals(all.numberOfMatches(), top.numberOfMatches());
+        assertSameTop(all, top, 5);
+    }
+
+    /**
+     *  SearchGUI reports numberOfMatches() of a ranked query for the top
+     *  maxResults as the number of documents found.
+     */
+    @Test
+    public void rankedTopKReportsAllMatches() throws IOException {
+        String[] documents = new String[12];
+        for(int i = 0; i < 12; i++){
+            documents[i] = (i % 3 == 0) ? "x y" : (i % 3 == 1) ? repeat("x", i) + " z" : "w";
+        }
+        HashedIndex index = index(documents);
+        for(int k: new int[]{ 1, 2, 100 }){
+            assertEquals(4, ranked(index, "y", k).numberOfMatches());
+            assertEquals(8, ranked(index, "x", k).numberOfMatches());
+            assertEquals(8, ranked(index, "x y", k).numberOfMatches());
+            assertEquals(8, ranked(index, "x y z", k).numberOfMatches());
+        }
+        assertEquals(2, ranked(index, "x y", 2).size());
+    }
+
+    /**
+     *  Without pagerank scores, PAGERANK ranking falls back to tf-idf
+     *  rather than giving every document 0.
+     */
+    @Test
+    public void pagerankWithoutScoresRanksByTfIdf() throws IOException {
+        HashedIndex index = index("x y", "x x z", "y", "w", "x w");
+        PostingsList tfidf = ranked(index, "x y", 3);
+        PostingsList pagerank = index.search(new Query("x y"), Index.RANKED_QUERY, Index.PAGERANK, Index.UNIGRAM, 3);
+        assertSameTop(tfidf, pagerank, 3);
+        assertEquals(tfidf.numberOfMatches(), pagerank.numberOfMatches());
+    }
+}